@@ -0,0 +1,312 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Benchmarks.java
+ * @author V. Aiden
+ * 
+ * Benchmarks for the game hot paths, used to prove that engine changes actually make things faster
+ * 
+ * every benchmark is warmed up first (so the JIT has compiled it) and then measured over
+ * several iterations, the report shows time per operation, operations per second,
+ * the spread between iterations and the bytes allocated per operation (like JMH's -prof gc)
+ * 
+ * BENCHMARKS:
+ * canMove, rotate (with wall kicks), merge
+ * clearLines on boards with 0-4 full rows
+ * spawning a piece (generator -> queue -> tetromino)
+ * scoring every placement of a piece (a Board each vs a BoardBatch with either kernel)
+ * full headless games (random player and bot)
+ * 
+ * usage: Benchmarks [--filter TEXT] [--warmup N] [--iterations N] [--time MS]
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import simpleIO.Console;
+
+public class Benchmarks {
+	//results go here so the JIT can't throw the work away
+    static volatile long sink;
+
+    private static int warmupIterations = 5;
+    private static int iterations = 10;
+    private static long iterationNanos = 200_000_000; //200ms per iteration
+
+    /**
+     * one benchmark, does the operation ops times and returns something that depends on the work
+     */
+    interface Bench {
+        long run(int ops);
+    }
+
+    public static void main(String[] args) {
+        String filter = "";
+        Map<String, String> options = Options.parse(args, 0, "--filter", "--warmup", "--iterations", "--time");
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String value = option.getValue();
+            switch (option.getKey()) { //unknown options were already rejected
+                case "--filter": filter = value; break;
+                case "--warmup": warmupIterations = Integer.parseInt(value); break;
+                case "--iterations": iterations = Integer.parseInt(value); break;
+                case "--time": iterationNanos = Long.parseLong(value) * 1_000_000L; break;
+            }
+        }
+
+        Console.print(String.format("%-28s %12s %14s %10s %10s", "Benchmark", "ns/op", "ops/s", "error", "B/op"));
+
+        //a board with some junk at the bottom so collisions actually happen
+        Board board = junkBoard(6, 42);
+        Tetromino piece = new Tetromino(4); //T
+
+        if (matches("canMove", filter)) {
+            measure("canMove", ops -> {
+                long hits = 0;
+                for (int i = 0; i < ops; i++) {
+                    if (piece.canMove(board, (i & 3) - 1, i & 1)) {
+                    	hits++;
+                    }
+                }
+                return hits;
+            });
+        }
+
+        if (matches("rotate", filter)) {
+            measure("rotate", ops -> {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    piece.rotate(board);
+                    sum += piece.getRotation();
+                }
+                return sum;
+            });
+        }
+
+        if (matches("merge", filter)) {
+            Board target = new Board();
+            Tetromino flat = new Tetromino(1); //I
+            measure("merge", ops -> {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    if ((i & 63) == 0) {
+                    	target.clear();
+                    }
+                    flat.merge(target);
+                    sum += target.getRow(flat.getY());
+                }
+                return sum;
+            });
+        }
+
+        for (int full = 0; full <= 4; full++) {
+            String name = "clearLines(" + full + " full)";
+            if (!matches(name, filter)) {
+            	continue;
+            }
+            Board template = junkBoard(8, 7);
+            for (int y = Board.ROWS - full; y < Board.ROWS; y++) { //fill the bottom rows completely
+                for (int x = 0; x < Board.COLUMNS; x++) {
+                    template.setCell(x, y, 1);
+                }
+            }
+            Board work = new Board();
+            measure(name, ops -> {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    work.copyFrom(template);
+                    sum += work.clearLines();
+                }
+                return sum;
+            });
+        }
+
+        if (matches("spawn", filter)) {
+            PieceGenerator generator = PieceGenerator.create(PieceGenerator.Mode.BAG, 1);
+            PieceQueue queue = new PieceQueue(GameEngine.PREVIEW_SIZE + 1);
+            for (int i = 0; i < GameEngine.PREVIEW_SIZE; i++) {
+                queue.add(generator.next());
+            }
+            measure("spawn", ops -> {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    Tetromino spawned = new Tetromino(queue.poll());
+                    queue.add(generator.next());
+                    if (spawned.canMove(board, 0, 0)) {
+                    	sum += spawned.type;
+                    }
+                }
+                return sum;
+            });
+        }
+
+        //every placement of a T on the junk board, one op scores all of them
+        MoveGenerator generator = new MoveGenerator();
+        int placements = generator.generate(board, 4, 0, Tetromino.spawnX(4), Tetromino.spawnY(4));
+        Heuristic heuristic = new Heuristic();
+        Tetromino[] poses = new Tetromino[placements];
+        for (int i = 0; i < placements; i++) {
+            int pose = generator.getPlacement(i);
+            poses[i] = new Tetromino(4);
+            poses[i].setPose(MoveGenerator.poseRotation(pose), MoveGenerator.poseX(pose), MoveGenerator.poseY(pose));
+        }
+
+        if (matches("score(boards)", filter)) {
+            Board child = new Board();
+            measure("score(boards)", ops -> {
+                double sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    for (Tetromino pose : poses) {
+                        child.copyFrom(board);
+                        pose.merge(child);
+                        sum += heuristic.evaluate(child, child.clearLines(pose.getTopRow(), pose.getBottomRow()));
+                    }
+                }
+                return (long) sum;
+            });
+        }
+
+        for (boolean batched : new boolean[] {true, false}) {
+            String name = batched ? "score(batch, batched)" : "score(batch, scalar)";
+            if (!matches(name, filter)) {
+            	continue;
+            }
+            BoardBatch batch = new BoardBatch(placements, batched);
+            measure(name, ops -> {
+                double sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    batch.clear(board);
+                    for (Tetromino pose : poses) {
+                        batch.add(pose);
+                    }
+                    batch.evaluate(heuristic);
+                    sum += batch.getScore(i % placements);
+                }
+                return (long) sum;
+            });
+        }
+
+        if (matches("game(random)", filter)) {
+            measure("game(random)", ops -> {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    GameEngine engine = new GameEngine(i);
+                    TournamentRunner.play(engine, new RandomPlayer(i), 50, 1_000_000);
+                    sum += engine.getTicks();
+                }
+                return sum;
+            });
+        }
+
+        if (matches("game(bot)", filter)) {
+            measure("game(bot)", ops -> {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    GameEngine engine = new GameEngine(i);
+                    TournamentRunner.play(engine, new Bot(), 50, 1_000_000);
+                    sum += engine.getTicks();
+                }
+                return sum;
+            });
+        }
+    }
+
+    private static boolean matches(String name, String filter) { //empty filter runs everything
+        return name.contains(filter);
+    }
+
+    /**
+     * method for a board with random junk in the bottom rows (no full rows)
+     *
+     * @param rows of junk
+     * @param seed
+     * @return board
+     */
+    static Board junkBoard(int rows, long seed) {
+        FastRandom random = new FastRandom(seed);
+        Board board = new Board();
+        for (int y = Board.ROWS - rows; y < Board.ROWS; y++) {
+            int hole = random.nextInt(Board.COLUMNS); //at least one gap per row
+            for (int x = 0; x < Board.COLUMNS; x++) {
+                if (x != hole && random.nextInt(3) != 0) {
+                    board.setCell(x, y, 1 + random.nextInt(7));
+                }
+            }
+        }
+        return board;
+    }
+
+    /**
+     * method for running one benchmark and printing its results
+     *
+     * @param name
+     * @param benchmark
+     */
+    static void measure(String name, Bench bench) {
+        //find how many ops fill one iteration
+        int ops = 1;
+        while (true) {
+            long start = System.nanoTime();
+            sink += bench.run(ops);
+            if (System.nanoTime() - start > iterationNanos / 10 || ops >= (1 << 30)) {
+            	break;
+            }
+            ops <<= 1;
+        }
+        ops = (int) Math.min(Integer.MAX_VALUE, Math.max(1, ops * 10L));
+
+        for (int i = 0; i < warmupIterations; i++) {
+            sink += bench.run(ops);
+        }
+
+        double[] nsPerOp = new double[iterations];
+        long allocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            sink += bench.run(ops);
+            long elapsed = System.nanoTime() - start;
+            allocated += allocatedBytes() - bytesBefore;
+            nsPerOp[i] = (double) elapsed / ops;
+        }
+
+        //mean and 99.9% confidence interval (like JMH prints, Student's t because there are only a few iterations)
+        double mean = 0;
+        for (double v : nsPerOp) {
+            mean += v;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for (double v : nsPerOp) {
+            variance += (v - mean) * (v - mean);
+        }
+        double error = iterations > 1 ? studentT999(iterations - 1) * Math.sqrt(variance / (iterations - 1)) / Math.sqrt(iterations) : 0;
+        double bytesPerOp = allocatedBytes() < 0 ? Double.NaN : (double) allocated / ((long) ops * iterations);
+
+        Console.print(String.format("%-28s %12.2f %14.0f %10.2f %10.1f", name, mean, 1e9 / mean, error, bytesPerOp));
+    }
+
+    //two sided 99.9% quantile of Student's t (the 0.9995 point) with df degrees of freedom,
+    //table up to 30 and the Cornish-Fisher expansion around the normal quantile above that (off by less than 0.01%)
+    private static final double[] T_999 = {636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+        4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850, 3.819, 3.792, 3.768, 3.745, 3.725,
+        3.707, 3.690, 3.674, 3.659, 3.646};
+
+    private static double studentT999(int df) {
+        if (df <= T_999.length) {
+        	return T_999[df - 1];
+        }
+        double z = 3.290527, z2 = z * z, n = df;
+        return z + z * (z2 + 1) / (4 * n)
+                + z * ((5 * z2 + 16) * z2 + 3) / (96 * n * n)
+                + z * (((3 * z2 + 19) * z2 + 17) * z2 - 15) / (384 * n * n * n)
+                + z * ((((79 * z2 + 776) * z2 + 1482) * z2 - 1920) * z2 - 945) / (92160 * n * n * n * n);
+    }
+
+    private static long allocatedBytes() { //bytes this thread has allocated so far (-1 if the JVM can't tell)
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,18 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Action.java
+ * @author V. Aiden
+ * 
+ * Action is every input the player can give the game engine
+ * the UI turns key presses into these so the engine never has to know about JavaFX
+ */
+
+public enum Action {
+    LEFT,   //move left 1
+    RIGHT,  //move right 1
+    DOWN,   //move down 1 (locks the piece if it can't)
+    ROTATE, //rotate clockwise with wall kicks
+    HOLD,   //store/swap the current piece
+    HARD_DROP //drop to the landing row and lock right away
+}
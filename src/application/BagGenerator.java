@@ -0,0 +1,54 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * BagGenerator.java
+ * @author V. Aiden
+ * 
+ * BagGenerator deals the 7 tetrominos out of a shuffled bag,
+ * when the bag is empty it is refilled and shuffled again
+ */
+
+public class BagGenerator implements PieceGenerator {
+    private final FastRandom random;
+    private final int[] bag;
+    private int index = 7; //starts empty so the first call shuffles
+
+    /**
+     * constructor for 7-bag generator
+     *
+     * @param seed
+     */
+    public BagGenerator(long seed) {
+        random = new FastRandom(seed);
+        bag = new int[] {0, 1, 2, 3, 4, 5, 6};
+    }
+
+    private BagGenerator(BagGenerator other) {
+        random = new FastRandom(other.random);
+        bag = other.bag.clone();
+        index = other.index;
+    }
+
+    @Override
+    public PieceGenerator copy() {
+        return new BagGenerator(this);
+    }
+
+    @Override
+    public int next() {
+        if (index == bag.length) { //bag is empty -> shuffle a new one
+            shuffle();
+            index = 0;
+        }
+        return bag[index++];
+    }
+
+    private void shuffle() { //fisher-yates shuffle in place
+        for (int i = bag.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = bag[i];
+            bag[i] = bag[j];
+            bag[j] = temp;
+        }
+    }
+}
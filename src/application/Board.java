@@ -0,0 +1,367 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Board.java
+ * @author V. Aiden
+ *
+ * Board is the game grid stored as bitboards instead of an int[][]
+ * every row is a 10 bit mask (bit x set means column x is occupied) so collision checks
+ * are AND operations and a full line is just a compare against FULL_ROW
+ *
+ * the tile colors live in a separate array (3 bits per cell) which is only used for rendering
+ * 
+ * the board also keeps a zobrist hash of which cells are filled, the AI uses it
+ * to recognise boards it has already scored
+ * 
+ * the top block of every column is kept up to date as cells are filled and lines cleared,
+ * so how far a piece can fall is worked out from its bottom blocks without stepping it down
+ * 
+ * for game snapshots the rows are saved in chunks of CHUNK_ROWS (one long per row, occupancy and colors),
+ * chunks are never changed once made so a new snapshot reuses every chunk that is the same as
+ * in the snapshot before it (usually all of them)
+ */
+
+public class Board {
+	//constants
+    public static final int COLUMNS = 10;
+    public static final int ROWS = 20;
+    public static final int FULL_ROW = (1 << COLUMNS) - 1; //0x3FF, every column filled
+
+    //each cell color uses 3 bits (0 = empty, 1-7 = tetromino type + 1)
+    static final int COLOR_BITS = 3;
+    static final int COLOR_MASK = (1 << COLOR_BITS) - 1;
+
+    //snapshot chunks
+    static final int CHUNK_ROWS = 5;
+    static final int CHUNKS = ROWS / CHUNK_ROWS;
+
+    private final int[] rows = new int[ROWS]; //occupancy bitmask per row
+    private final int[] colors = new int[ROWS]; //packed colors per row (rendering only)
+    private long hash = 0; //zobrist hash of the filled cells
+    private final int[] tops = new int[COLUMNS]; //row of the top block in each column (ROWS if empty)
+
+    /**
+     * constructor for an empty board
+     */
+    public Board() {
+        clear();
+    }
+
+    /**
+     * constructor for a copy of another board
+     *
+     * @param board to copy
+     */
+    public Board(Board other) {
+        copyFrom(other);
+    }
+
+    /**
+     * method for making this board the same as another one (no new arrays)
+     *
+     * @param board to copy
+     */
+    public void copyFrom(Board other) {
+        System.arraycopy(other.rows, 0, rows, 0, ROWS);
+        System.arraycopy(other.colors, 0, colors, 0, ROWS);
+        System.arraycopy(other.tops, 0, tops, 0, COLUMNS);
+        hash = other.hash;
+    }
+
+    /**
+     * method for checking if a cell is occupied
+     *
+     * @param x (column)
+     * @param y (row)
+     * @return true if there is a block there
+     */
+    public boolean isOccupied(int x, int y) {
+        return (rows[y] & (1 << x)) != 0;
+    }
+
+    /**
+     * method for checking if a cell is outside the board or occupied
+     *
+     * @param x (column)
+     * @param y (row)
+     * @return true if a block can't go there
+     */
+    public boolean isBlocked(int x, int y) {
+        if (x < 0 || x >= COLUMNS || y < 0 || y >= ROWS) {
+            return true;
+        }
+        return (rows[y] & (1 << x)) != 0;
+    }
+
+    /**
+     * method for getting the color of a cell (matches the old grid values)
+     *
+     * @param x (column)
+     * @param y (row)
+     * @return 0 if empty, otherwise tetromino type + 1
+     */
+    public int getCell(int x, int y) {
+        return (colors[y] >>> (x * COLOR_BITS)) & COLOR_MASK;
+    }
+
+    /**
+     * method for filling a cell
+     *
+     * @param x (column)
+     * @param y (row)
+     * @param color (tetromino type + 1)
+     */
+    public void setCell(int x, int y, int color) {
+        int shift = x * COLOR_BITS;
+        if ((rows[y] & (1 << x)) == 0) { //newly filled -> add it to the hash
+            hash ^= Zobrist.cell(x, y);
+        }
+        rows[y] |= 1 << x;
+        colors[y] = (colors[y] & ~(COLOR_MASK << shift)) | (color << shift);
+        if (y < tops[x]) {
+            tops[x] = y;
+        }
+    }
+
+    /**
+     * method for getting a whole row as a bitmask
+     *
+     * @param y (row)
+     * @return occupancy mask of the row
+     */
+    public int getRow(int y) {
+        return rows[y];
+    }
+
+    /**
+     * method for getting the colors of a whole row (3 bits per cell, column x at bit x * 3)
+     *
+     * @param y (row)
+     * @return packed colors of the row
+     */
+    public int getColorRow(int y) {
+        return colors[y];
+    }
+
+    /**
+     * method for getting the top block of a column
+     *
+     * @param x (column)
+     * @return row of the highest block, ROWS if the column is empty
+     */
+    public int getColumnTop(int x) {
+        return tops[x];
+    }
+
+    /**
+     * method for getting the height of a column
+     *
+     * @param x (column)
+     * @return amount of rows from the floor to the top of the highest block (0 if empty)
+     */
+    public int getColumnHeight(int x) {
+        return ROWS - tops[x];
+    }
+
+    /**
+     * method for removing every full row and shifting the rows above it down
+     *
+     * @return amount of lines cleared
+     */
+    public int clearLines() {
+        return clearLines(0, ROWS - 1);
+    }
+
+    /**
+     * method for removing full rows when only some rows can be full (the rows a piece was just merged into)
+     * 
+     * the full rows are found first, then one pass from the lowest one up moves every row
+     * that stays down to where it belongs, so each row is copied at most once however many lines
+     * are cleared, and the pass stops at the top of the stack (everything above is empty)
+     *
+     * @param from top row to check
+     * @param to bottom row to check
+     * @return amount of lines cleared
+     */
+    public int clearLines(int from, int to) {
+        int full = 0; //bit y set -> row y is full
+        for (int y = Math.max(0, from); y <= Math.min(to, ROWS - 1); y++) {
+            if (rows[y] == FULL_ROW) { //a full row is a single compare
+                full |= 1 << y;
+            }
+        }
+        if (full == 0) {
+        	return 0;
+        }
+
+        int stackTop = ROWS; //highest row with a block in it
+        for (int x = 0; x < COLUMNS; x++) {
+            stackTop = Math.min(stackTop, tops[x]);
+        }
+        int write = 31 - Integer.numberOfLeadingZeros(full); //lowest full row
+        for (int read = write; read >= stackTop; read--) {
+            if ((full & (1 << read)) == 0) { //row stays -> move it down past the full rows under it
+                rows[write] = rows[read];
+                colors[write] = colors[read];
+                write--;
+            }
+        }
+        for (; write >= stackTop; write--) { //rows left at the top are now empty
+            rows[write] = 0;
+            colors[write] = 0;
+        }
+
+        //every cell above moved so the hash and tops have to be worked out again
+        rehash();
+        updateTops();
+        return Integer.bitCount(full);
+    }
+
+    //one pass from the top, a column's top is the first row that has it
+    private void updateTops() {
+        int seen = 0;
+        for (int x = 0; x < COLUMNS; x++) {
+            tops[x] = ROWS;
+        }
+        for (int y = 0; y < ROWS && seen != FULL_ROW; y++) {
+            int first = rows[y] & ~seen;
+            while (first != 0) {
+                tops[Integer.numberOfTrailingZeros(first)] = y;
+                first &= first - 1;
+            }
+            seen |= rows[y];
+        }
+    }
+
+    private void rehash() {
+        hash = 0;
+        for (int y = 0; y < ROWS; y++) {
+            int row = rows[y];
+            while (row != 0) {
+                hash ^= Zobrist.cell(Integer.numberOfTrailingZeros(row), y);
+                row &= row - 1;
+            }
+        }
+    }
+
+    /**
+     * method for pushing garbage lines in from the bottom (multiplayer attacks),
+     * every garbage line is full except for the hole column
+     *
+     * @param amount of lines
+     * @param hole column
+     * @param color of the garbage cells
+     * @return true if blocks were pushed off the top (the player topped out)
+     */
+    public boolean insertGarbage(int lines, int hole, int color) {
+        lines = Math.min(lines, ROWS);
+        if (lines <= 0) {
+        	return false;
+        }
+        boolean toppedOut = false;
+        for (int y = 0; y < lines; y++) {
+            toppedOut |= rows[y] != 0;
+        }
+
+        //everything moves up, the garbage goes in at the bottom
+        System.arraycopy(rows, lines, rows, 0, ROWS - lines);
+        System.arraycopy(colors, lines, colors, 0, ROWS - lines);
+        int colorRow = 0;
+        for (int x = 0; x < COLUMNS; x++) {
+            if (x != hole) {
+                colorRow |= color << (x * COLOR_BITS);
+            }
+        }
+        for (int y = ROWS - lines; y < ROWS; y++) {
+            rows[y] = FULL_ROW & ~(1 << hole);
+            colors[y] = colorRow;
+        }
+        rehash();
+        updateTops();
+        return toppedOut;
+    }
+
+    /**
+     * method for saving the rows for a snapshot, chunks that didn't change since the last snapshot are shared
+     *
+     * @param chunks of the last snapshot (null for none)
+     * @return chunks (the same array if nothing changed), never change them
+     */
+    long[][] snapshotRows(long[][] previous) {
+        long[][] chunks = null;
+        for (int c = 0; c < CHUNKS; c++) {
+            if (previous != null && sameChunk(previous[c], c)) {
+                if (chunks != null) {
+                    chunks[c] = previous[c];
+                }
+                continue;
+            }
+            if (chunks == null) { //first changed chunk, copy the shared ones before it
+                chunks = new long[CHUNKS][];
+                for (int k = 0; k < c; k++) {
+                    chunks[k] = previous[k];
+                }
+            }
+            long[] chunk = new long[CHUNK_ROWS];
+            for (int r = 0; r < CHUNK_ROWS; r++) {
+                chunk[r] = packRow(c * CHUNK_ROWS + r);
+            }
+            chunks[c] = chunk;
+        }
+        return chunks == null ? previous : chunks;
+    }
+
+    private boolean sameChunk(long[] chunk, int c) {
+        for (int r = 0; r < CHUNK_ROWS; r++) {
+            if (chunk[r] != packRow(c * CHUNK_ROWS + r)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long packRow(int y) {
+        return (long) rows[y] << 32 | colors[y] & 0xFFFFFFFFL;
+    }
+
+    /**
+     * method for putting the board back to a snapshot
+     *
+     * @param chunks from snapshotRows
+     * @param hash the board had
+     */
+    void restoreRows(long[][] chunks, long hash) {
+        for (int c = 0; c < CHUNKS; c++) {
+            long[] chunk = chunks[c];
+            for (int r = 0; r < CHUNK_ROWS; r++) {
+                rows[c * CHUNK_ROWS + r] = (int) (chunk[r] >>> 32);
+                colors[c * CHUNK_ROWS + r] = (int) chunk[r];
+            }
+        }
+        this.hash = hash;
+        updateTops();
+    }
+
+    /**
+     * method for getting the zobrist hash of the filled cells
+     *
+     * @return hash
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * method for emptying the whole board
+     */
+    public void clear() {
+        for (int y = 0; y < ROWS; y++) {
+            rows[y] = 0;
+            colors[y] = 0;
+        }
+        for (int x = 0; x < COLUMNS; x++) {
+            tops[x] = ROWS;
+        }
+        hash = 0;
+    }
+}
@@ -0,0 +1,278 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * BoardBatch.java
+ * @author V. Aiden
+ *
+ * BoardBatch scores every placement of a piece at once for the AI, instead of copying the board,
+ * locking the piece and scoring a whole Board for each one
+ *
+ * every placement goes on the same parent board, so a placement only needs its column heights
+ * and the lines it cleared: a column is as high as the parent's or the piece's top (whichever is higher),
+ * only placements that clear lines look at the rows again, the holes then come from the heights
+ * (cells under the column tops) minus the blocks (parent + 4 - 10 per cleared line)
+ *
+ * the heights are stored structure-of-arrays, column x of every placement sits next to each other
+ * (heights[(x + 1) * capacity + lane], one lane per placement, with a full wall column on both sides),
+ * the parent's heights are copied into a whole column of lanes at a time and a placement only writes
+ * the columns its piece covers
+ *
+ * KERNELS (both give exactly the same scores as Heuristic.evaluate):
+ * batched - every step is a loop over all the lanes with no branches inside (adds, min, max, abs),
+ *           so the JIT can compile them to SIMD instructions
+ * scalar  - one placement at a time like Heuristic.evaluate, it is the fallback and can be picked
+ *           with -Dtetris.kernel=scalar (to compare them or if the batched one is slower on some machine)
+ *
+ * a batch is not thread safe, every search task keeps its own
+ */
+
+import java.util.Arrays;
+
+public class BoardBatch {
+    public static final boolean BATCHED = !"scalar".equals(System.getProperty("tetris.kernel"));
+    private static final int FILL_LANES = 16; //lanes the parent is copied into at a time
+
+    private final boolean batched;
+    private int capacity;
+    private int size = 0;
+    private int filled = 0; //lanes that have the parent copied in (ready for a piece)
+
+    //board every placement goes on
+    private final int[] parentRows = new int[Board.ROWS];
+    private final int[] parentHeights = new int[Board.COLUMNS];
+    private int parentBlocks = 0;
+
+    private int[] heights; //[(x + 1) * capacity + lane]
+    private int[] lines; //lines each placement cleared
+    private double[] scores;
+
+    //features, [lane]
+    private int[] holes, height, bumpiness, wells;
+
+    /**
+     * constructor for a batch using the kernel picked at startup
+     *
+     * @param placements it has room for (it grows if more are added)
+     */
+    public BoardBatch(int capacity) {
+        this(capacity, BATCHED);
+    }
+
+    /**
+     * constructor for board batch
+     *
+     * @param placements it has room for (it grows if more are added)
+     * @param true = batched kernel, false = scalar kernel
+     */
+    public BoardBatch(int capacity, boolean batched) {
+        this.batched = batched;
+        allocate(Math.max(1, capacity));
+    }
+
+    private void allocate(int capacity) {
+        int[] old = heights;
+        heights = new int[(Board.COLUMNS + 2) * capacity];
+        Arrays.fill(heights, 0, capacity, Board.ROWS); //walls count as full
+        Arrays.fill(heights, (Board.COLUMNS + 1) * capacity, heights.length, Board.ROWS);
+        if (old != null) { //lanes are spread over every column -> copy column by column
+            for (int x = 1; x <= Board.COLUMNS; x++) {
+                System.arraycopy(old, x * this.capacity, heights, x * capacity, filled);
+            }
+        }
+        lines = lines == null ? new int[capacity] : Arrays.copyOf(lines, capacity);
+        scores = new double[capacity];
+        holes = new int[capacity];
+        height = new int[capacity];
+        bumpiness = new int[capacity];
+        wells = new int[capacity];
+        this.capacity = capacity;
+    }
+
+    /**
+     * method for emptying the batch and setting the board the next placements go on
+     *
+     * @param board before the pieces
+     */
+    public void clear(Board parent) {
+        size = 0;
+        filled = 0;
+        parentBlocks = 0;
+        for (int y = 0; y < Board.ROWS; y++) {
+            parentRows[y] = parent.getRow(y);
+            parentBlocks += Integer.bitCount(parentRows[y]);
+        }
+        for (int x = 0; x < Board.COLUMNS; x++) {
+            parentHeights[x] = parent.getColumnHeight(x);
+        }
+    }
+
+    //copies the parent into the next few lanes, a whole column of lanes at a time (no per placement copy)
+    private void fill() {
+        if (filled == capacity) {
+            allocate(capacity * 2);
+        }
+        int end = Math.min(capacity, filled + FILL_LANES);
+        for (int x = 0; x < Board.COLUMNS; x++) {
+            int column = (x + 1) * capacity;
+            Arrays.fill(heights, column + filled, column + end, parentHeights[x]);
+        }
+        filled = end;
+    }
+
+    /**
+     * method for adding the parent board with a piece locked on it
+     *
+     * @param piece in the pose it locks at (has to fit)
+     * @return lane of the new placement
+     */
+    public int add(Tetromino piece) {
+        if (size == filled) {
+            fill();
+        }
+        int lane = size++;
+
+        //every column the piece covers is at least as high as its top block there,
+        //row + 1 only carries into bit COLUMNS when every column is filled
+        int full = 0, covered = 0;
+        int from = piece.getTopRow(), to = piece.getBottomRow();
+        for (int y = from; y <= to; y++) {
+            int mask = piece.getRowMask(y);
+            full |= (((parentRows[y] | mask) + 1) >>> Board.COLUMNS) << y;
+            for (int newly = mask & ~covered; newly != 0; newly &= newly - 1) {
+                int x = Integer.numberOfTrailingZeros(newly);
+                heights[(x + 1) * capacity + lane] = Math.max(parentHeights[x], Board.ROWS - y);
+            }
+            covered |= mask;
+        }
+        lines[lane] = Integer.bitCount(full);
+        if (full != 0) {
+            clearedHeights(piece, from, to, lane, full);
+        }
+        return lane;
+    }
+
+    //a column can drop more than the lines cleared (if it only had blocks in them), so find the new tops
+    private void clearedHeights(Tetromino piece, int from, int to, int lane, int full) {
+        int seen = 0;
+        for (int y = 0; y < Board.ROWS; y++) {
+            if ((full & (1 << y)) != 0) {
+            	continue;
+            }
+            int row = parentRows[y];
+            if (y >= from && y <= to) {
+                row |= piece.getRowMask(y);
+            }
+            int below = Integer.bitCount(full >>> y); //cleared rows under this one move it down
+            for (int newly = row & ~seen; newly != 0; newly &= newly - 1) {
+                heights[(Integer.numberOfTrailingZeros(newly) + 1) * capacity + lane] = Board.ROWS - y - below;
+            }
+            seen |= row;
+        }
+        for (int empty = ~seen & Board.FULL_ROW; empty != 0; empty &= empty - 1) {
+            heights[(Integer.numberOfTrailingZeros(empty) + 1) * capacity + lane] = 0;
+        }
+    }
+
+    /**
+     * method for scoring every placement in the batch
+     *
+     * @param heuristic to score with
+     */
+    public void evaluate(Heuristic heuristic) {
+        if (batched) {
+            batchedFeatures();
+        } else {
+            scalarFeatures();
+        }
+        for (int lane = 0; lane < size; lane++) {
+            scores[lane] = heuristic.score(holes[lane], height[lane], bumpiness[lane], lines[lane], wells[lane]);
+        }
+    }
+
+    //every loop goes over all the lanes and has no branches (so it can be vectorized)
+    private void batchedFeatures() {
+        int n = size, cap = capacity;
+        Arrays.fill(height, 0, n, 0);
+        Arrays.fill(bumpiness, 0, n, 0);
+        Arrays.fill(wells, 0, n, 0);
+        for (int x = 1; x <= Board.COLUMNS; x++) {
+            int column = x * cap;
+            for (int lane = 0; lane < n; lane++) {
+                int h = heights[column + lane];
+                height[lane] += h;
+                wells[lane] += Math.max(0, Math.min(heights[column - cap + lane], heights[column + cap + lane]) - h);
+            }
+        }
+        for (int x = 2; x <= Board.COLUMNS; x++) {
+            int column = x * cap;
+            for (int lane = 0; lane < n; lane++) {
+                bumpiness[lane] += Math.abs(heights[column + lane] - heights[column - cap + lane]);
+            }
+        }
+
+        //every cell under a column top that isn't a block is a hole
+        int blocks = parentBlocks + 4;
+        for (int lane = 0; lane < n; lane++) {
+            holes[lane] = height[lane] - (blocks - Board.COLUMNS * lines[lane]);
+        }
+    }
+
+    //one placement at a time
+    private void scalarFeatures() {
+        for (int lane = 0; lane < size; lane++) {
+            int sum = 0, bump = 0, well = 0;
+            for (int x = 1; x <= Board.COLUMNS; x++) {
+                int h = heights[x * capacity + lane];
+                int left = heights[(x - 1) * capacity + lane];
+                sum += h;
+                if (x > 1) {
+                    bump += Math.abs(h - left);
+                }
+                well += Math.max(0, Math.min(left, heights[(x + 1) * capacity + lane]) - h);
+            }
+            height[lane] = sum;
+            bumpiness[lane] = bump;
+            wells[lane] = well;
+            holes[lane] = sum - (parentBlocks + 4 - Board.COLUMNS * lines[lane]);
+        }
+    }
+
+    /**
+     * method for the score of a placement (after evaluate)
+     *
+     * @param lane
+     * @return score
+     */
+    public double getScore(int lane) {
+        return scores[lane];
+    }
+
+    /**
+     * method for the lines a placement cleared
+     *
+     * @param lane
+     * @return lines
+     */
+    public int getLines(int lane) {
+        return lines[lane];
+    }
+
+    /**
+     * method for the height of a column after a placement
+     *
+     * @param lane
+     * @param column
+     * @return height
+     */
+    public int getColumnHeight(int lane, int x) {
+        return heights[(x + 1) * capacity + lane];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isBatched() {
+        return batched;
+    }
+}
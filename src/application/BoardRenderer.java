@@ -0,0 +1,152 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * BoardRenderer.java
+ * @author V. Aiden
+ *
+ * BoardRenderer draws the board canvas with as few draw calls as possible
+ *
+ * the locked blocks (the stack) are kept in an off-screen image, it remembers which colors it holds
+ * as packed color rows (the same 3 bits per cell as Board) and only the cells that are different
+ * get written again, that only happens when a piece is merged or lines are cleared
+ *
+ * a frame is then one copy of the stack image plus the 4 tiles of the ghost piece (where the falling
+ * piece would land, skipped when it is already there) and the 4 tiles of the falling piece
+ * (out of the tile atlas), and if neither the stack nor the piece moved nothing is drawn at all
+ * 
+ * the piece can be drawn part of a row lower than it really is, the game uses this to slide it
+ * down smoothly between gravity drops
+ */
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+
+public class BoardRenderer {
+    private final GraphicsContext gc;
+    private final TileAtlas atlas;
+    private final int tileSize;
+
+    //cached layer of locked blocks
+    private final WritableImage stack;
+    private final PixelWriter stackWriter;
+    private final int[] stackRows = new int[Board.ROWS]; //packed colors that are in the stack image
+    private boolean stackValid = false;
+
+    //falling piece that is on the canvas right now
+    private int shownType = -1, shownRotation, shownX, shownY;
+    private double shownFall;
+    private boolean canvasValid = false; //false -> draw next frame even if nothing moved
+
+    private int lastDrawCalls = 0, lastTilesWritten = 0;
+
+    /**
+     * constructor for board renderer
+     *
+     * @param graphics context of the board canvas
+     * @param tile atlas
+     */
+    public BoardRenderer(GraphicsContext gc, TileAtlas atlas) {
+        this.gc = gc;
+        this.atlas = atlas;
+        this.tileSize = atlas.getTileSize();
+        stack = new WritableImage(Board.COLUMNS * tileSize, Board.ROWS * tileSize);
+        stackWriter = stack.getPixelWriter();
+    }
+
+    /**
+     * method for forcing a full repaint next frame (the canvas was cleared or is new)
+     */
+    public void invalidate() {
+        stackValid = false;
+        canvasValid = false;
+    }
+
+    /**
+     * method for drawing a frame
+     *
+     * @param board
+     * @param falling tetromino (can be null)
+     * @return amount of draw calls made on the canvas
+     */
+    public int draw(Board board, Tetromino current) {
+        return draw(board, current, 0);
+    }
+
+    /**
+     * method for drawing a frame with the falling piece moved down a bit
+     *
+     * @param board
+     * @param falling tetromino (can be null)
+     * @param fall (pixels to draw the piece lower, less than one tile)
+     * @return amount of draw calls made on the canvas
+     */
+    public int draw(Board board, Tetromino current, double fall) {
+        boolean stackChanged = updateStack(board);
+
+        boolean pieceMoved = current == null ? shownType != -1
+                : current.type != shownType || current.getRotation() != shownRotation
+                        || current.getX() != shownX || current.getY() != shownY || fall != shownFall;
+        if (canvasValid && !stackChanged && !pieceMoved) {
+            lastDrawCalls = 0;
+            return 0; //the canvas already shows this frame
+        }
+
+        int calls = 1;
+        gc.drawImage(stack, 0, 0);
+        if (current != null) {
+            int drop = current.dropDistance(board);
+            if (drop > 0) { //ghost where it would land
+                for (int i = 0; i < 4; i++) {
+                    atlas.drawTile(gc, TileAtlas.GHOST + current.type, current.getBlockX(i) * tileSize, (current.getBlockY(i) + drop) * tileSize);
+                }
+                calls += 4;
+            }
+            for (int i = 0; i < 4; i++) { //the falling tetromino on top
+                atlas.drawTile(gc, current.type + 1, current.getBlockX(i) * tileSize, current.getBlockY(i) * tileSize + fall);
+            }
+            calls += 4;
+            shownType = current.type;
+            shownRotation = current.getRotation();
+            shownX = current.getX();
+            shownY = current.getY();
+            shownFall = fall;
+        } else {
+            shownType = -1;
+        }
+        canvasValid = true;
+        lastDrawCalls = calls;
+        return calls;
+    }
+
+    //writes the cells of the stack image whose color changed, returns true if any did
+    private boolean updateStack(Board board) {
+        int written = 0;
+        for (int y = 0; y < Board.ROWS; y++) {
+            int row = board.getColorRow(y);
+            int changed = stackValid ? row ^ stackRows[y] : -1; //-1 -> every cell
+            if (changed == 0) {
+                continue; //one compare for a row that is the same
+            }
+            for (int x = 0; x < Board.COLUMNS; x++) {
+                int shift = x * Board.COLOR_BITS;
+                if (((changed >>> shift) & Board.COLOR_MASK) != 0) {
+                    atlas.writeTile(stackWriter, (row >>> shift) & Board.COLOR_MASK, x * tileSize, y * tileSize);
+                    written++;
+                }
+            }
+            stackRows[y] = row;
+        }
+        stackValid = true;
+        lastTilesWritten = written;
+        return written > 0;
+    }
+
+    public int getLastDrawCalls() {
+        return lastDrawCalls;
+    }
+
+    public int getLastTilesWritten() {
+        return lastTilesWritten;
+    }
+}
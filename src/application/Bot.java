@@ -0,0 +1,486 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Bot.java
+ * @author V. Aiden
+ * 
+ * Bot is an AI player, used for demos, load testing and as an opponent to compare against
+ * 
+ * HOW IT PICKS A MOVE:
+ * every placement of the current piece (and of the hold piece) is found with the MoveGenerator,
+ * each one is locked on a copy of the board and scored with the Heuristic,
+ * the best few (the beam) are then searched deeper using the next queue preview
+ * and the placement that leads to the best board is picked, the deeper levels score every
+ * placement at once with a BoardBatch and only make real boards for the beam
+ * 
+ * the deeper search of each root placement is its own fork-join task so the lookahead is
+ * spread over every core, after a placement is picked the bot just walks the piece there
+ * and hard drops it as soon as it is straight above the target
+ * 
+ * searched positions can be saved in a TranspositionTable (shared by all the tasks), so a board
+ * reached again (by other placements or by the next piece's search) isn't searched twice
+ *
+ * a background bot (the one in the game) starts the search on the pool when a piece spawns and
+ * returns no action until it is done, so the JavaFX thread never waits for the lookahead
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+public class Bot implements Player {
+    private static final double GAME_OVER = -1e9; //score for a piece that can't spawn
+    //the up kick lets pieces climb, so if gravity keeps messing up the path the bot could
+    //chase its target forever, after this many inputs it just hard drops the piece
+    private static final int MAX_ACTIONS_PER_PIECE = 40;
+
+    private final Heuristic heuristic;
+    private final int depth; //amount of pieces searched (1 = only the current one)
+    private final int beamWidth; //placements searched deeper at each level
+    private final ForkJoinPool pool; //null = search on the calling thread
+    private final TranspositionTable table; //null = no caching
+    private final boolean background; //search without blocking nextAction
+
+    //plan for the current piece
+    private long plannedPiece = -1; //engine piece count the plan was made for
+    private boolean holdFirst = false;
+    private int target = -1; //pose to lock the piece at
+    private int expected = -1; //pose the piece should be in before the next path step
+    private final MoveGenerator pathFinder = new MoveGenerator();
+    private final Action[] path = new Action[MoveGenerator.POSES];
+    private int pathLength = -1, pathIndex = 0;
+    private int actions = 0; //inputs used on the current piece
+    private final Tetromino scratch = new Tetromino(0);
+    private ForkJoinTask<Candidate> pending; //search still running in the background (null = none)
+
+    /**
+     * a root placement (a board after one piece was locked)
+     */
+    private static class Candidate implements Comparable<Candidate> {
+        final boolean hold; //hold has to be pressed first
+        final int pose;
+        final Board board;
+        final int lines;
+        final double score; //score of the board itself
+        double value; //best score found by searching deeper
+
+        Candidate(boolean hold, int pose, Board board, int lines, double score) {
+            this.hold = hold;
+            this.pose = pose;
+            this.board = board;
+            this.lines = lines;
+            this.score = score;
+            this.value = score;
+        }
+
+        @Override
+        public int compareTo(Candidate other) { //best first
+            return Double.compare(other.score, score);
+        }
+    }
+
+    /**
+     * constructor for a single threaded bot without lookahead (fast enough for huge tournaments)
+     */
+    public Bot() {
+        this(new Heuristic(), 1, 1, null);
+    }
+
+    /**
+     * constructor for bot
+     *
+     * @param heuristic used to score boards
+     * @param depth (1 = current piece only, 2 = plus one preview piece, ...)
+     * @param beam width
+     * @param pool to spread the lookahead over (null = calling thread only)
+     */
+    public Bot(Heuristic heuristic, int depth, int beamWidth, ForkJoinPool pool) {
+        this(heuristic, depth, beamWidth, pool, null);
+    }
+
+    /**
+     * constructor for bot with a transposition table
+     * (only share a table between bots with the same heuristic, depth and beam width)
+     *
+     * @param heuristic used to score boards
+     * @param depth (1 = current piece only, 2 = plus one preview piece, ...)
+     * @param beam width
+     * @param pool to spread the lookahead over (null = calling thread only)
+     * @param table to cache searched positions in (null = no caching)
+     */
+    public Bot(Heuristic heuristic, int depth, int beamWidth, ForkJoinPool pool, TranspositionTable table) {
+        this(heuristic, depth, beamWidth, pool, table, false);
+    }
+
+    /**
+     * constructor for bot
+     *
+     * @param heuristic used to score boards
+     * @param depth (1 = current piece only, 2 = plus one preview piece, ...)
+     * @param beam width
+     * @param pool to spread the lookahead over (null = calling thread only)
+     * @param table to cache searched positions in (null = no caching)
+     * @param true = search on the pool in the background (nextAction returns null until it's done), needs a pool
+     */
+    public Bot(Heuristic heuristic, int depth, int beamWidth, ForkJoinPool pool, TranspositionTable table, boolean background) {
+        if (background && pool == null) {
+            throw new IllegalArgumentException("A background bot needs a pool to search on");
+        }
+        this.heuristic = heuristic;
+        this.depth = Math.max(1, depth);
+        this.beamWidth = Math.max(1, beamWidth);
+        this.pool = pool;
+        this.table = table;
+        this.background = background;
+    }
+
+    @Override
+    public Action nextAction(GameEngine engine) {
+        Tetromino current = engine.getCurrent();
+        if (engine.getPieces() != plannedPiece) { //new piece -> decide where it goes
+            plan(engine, pose(current));
+        }
+        if (pending != null) { //still searching -> wait
+            if (!pending.isDone()) {
+            	return null;
+            }
+            choose(pending.join());
+            pending = null;
+        }
+        if (target < 0) { //nowhere to go, just wait for the game to end
+        	return null;
+        }
+        if (++actions > MAX_ACTIONS_PER_PIECE) { //taking too long -> drop it where it is
+        	return Action.HARD_DROP;
+        }
+
+        if (holdFirst) {
+            holdFirst = false;
+            //holding with an empty hold takes a new piece from the queue
+            plannedPiece = engine.getHold() == null ? engine.getPieces() + 1 : engine.getPieces();
+            pathLength = -1;
+            return Action.HOLD;
+        }
+
+        int now = pose(current);
+        if (now == target) { //in place -> lock it
+        	return Action.DOWN;
+        }
+        if (MoveGenerator.poseRotation(now) == MoveGenerator.poseRotation(target) && MoveGenerator.poseX(now) == MoveGenerator.poseX(target)
+                && current.landingY(engine.getBoard()) == MoveGenerator.poseY(target)) {
+        	return Action.HARD_DROP; //straight above the target with nothing in the way
+        }
+
+        if (pathLength < 0 || pathIndex >= pathLength || now != expected) {
+        	//no path yet or gravity moved the piece -> find the way from where it is now
+            pathFinder.generate(engine.getBoard(), current.type, current.getRotation(), current.getX(), current.getY());
+            if (!pathFinder.isReachable(target)) {
+                plan(engine, now); //target can't be reached anymore, pick again from here
+                if (pending != null) {
+                	return null;
+                }
+                if (holdFirst) {
+                	return nextAction(engine);
+                }
+                if (target < 0) {
+                	return null;
+                }
+                if (target == now) {
+                	return Action.DOWN;
+                }
+                pathFinder.generate(engine.getBoard(), current.type, current.getRotation(), current.getX(), current.getY());
+            }
+            pathLength = pathFinder.path(target, path);
+            pathIndex = 0;
+        }
+
+        Action action = path[pathIndex++];
+        expected = after(engine.getBoard(), current, action);
+        return action;
+    }
+
+    private static int pose(Tetromino t) {
+        return MoveGenerator.pose(t.getRotation(), t.getX(), t.getY());
+    }
+
+    private int after(Board board, Tetromino current, Action action) { //pose after doing an action
+        scratch.type = current.type;
+        scratch.setPose(current.getRotation(), current.getX(), current.getY());
+        switch (action) {
+            case LEFT: scratch.move(-1, 0); break;
+            case RIGHT: scratch.move(1, 0); break;
+            case DOWN: scratch.move(0, 1); break;
+            default: scratch.rotate(board); break;
+        }
+        return pose(scratch);
+    }
+
+    /**
+     * method for choosing where the current piece goes
+     * (a background bot only starts the search, nextAction picks up the result)
+     *
+     * @param engine (current game)
+     * @param pose the current piece is in
+     */
+    private void plan(GameEngine engine, int start) {
+        if (plannedPiece != engine.getPieces()) {
+        	actions = 0;
+        }
+        plannedPiece = engine.getPieces();
+        pathLength = -1;
+        holdFirst = false;
+        target = -1;
+        if (pending != null) { //planned for a piece that is gone
+            pending.cancel(false);
+            pending = null;
+        }
+
+        //upcoming pieces
+        PieceQueue queue = engine.getNextQueue();
+        int[] preview = new int[queue.size()];
+        for (int i = 0; i < preview.length; i++) {
+            preview[i] = queue.peek(i);
+        }
+        int holdType = -1; //-1 = can't hold
+        if (engine.canHold()) {
+            Tetromino hold = engine.getHold();
+            holdType = hold != null ? hold.type : preview[0];
+        }
+
+        //the task gets its own copy of the board, the game keeps going while it searches
+        PlanTask task = new PlanTask(new Board(engine.getBoard()), engine.getCurrent().type, start, holdType,
+                engine.getHold() == null, preview);
+        if (background) {
+            pending = pool.submit(task);
+        } else {
+            choose(pool != null ? pool.invoke(task) : task.compute());
+        }
+    }
+
+    private void choose(Candidate best) {
+        if (best != null) { //null = nowhere to go
+            holdFirst = best.hold;
+            target = best.pose;
+        }
+    }
+
+    /**
+     * fork-join task for picking the best root placement
+     */
+    private class PlanTask extends RecursiveTask<Candidate> {
+        private static final long serialVersionUID = 1L;
+        private final Board board;
+        private final int type, start;
+        private final int holdType; //-1 = can't hold
+        private final boolean holdEmpty; //holding takes a piece from the queue
+        private final int[] preview;
+
+        PlanTask(Board board, int type, int start, int holdType, boolean holdEmpty, int[] preview) {
+            this.board = board;
+            this.type = type;
+            this.start = start;
+            this.holdType = holdType;
+            this.holdEmpty = holdEmpty;
+            this.preview = preview;
+        }
+
+        @Override
+        protected Candidate compute() {
+            //root placements without and with holding
+            List<Candidate> roots = new ArrayList<>();
+            Search search = new Search();
+            search.addRoots(roots, board, type, start, false);
+            int[] rest = preview;
+            int[] holdRest = preview;
+            if (holdType >= 0) {
+                if (holdEmpty) { //the next piece gets used up
+                	holdRest = Arrays.copyOfRange(preview, 1, preview.length);
+                }
+                int spawn = MoveGenerator.pose(0, Tetromino.spawnX(holdType), Tetromino.spawnY(holdType));
+                search.addRoots(roots, board, holdType, spawn, true);
+            }
+            if (roots.isEmpty()) { //nowhere to go, game is about to end
+            	return null;
+            }
+
+            //only the best few get searched deeper
+            Collections.sort(roots);
+            List<Candidate> beam = roots.subList(0, Math.min(beamWidth, roots.size()));
+            if (depth > 1) {
+                List<LookaheadTask> tasks = new ArrayList<>();
+                for (Candidate c : beam) {
+                    tasks.add(new LookaheadTask(c, c.hold ? holdRest : rest));
+                }
+                if (pool != null) { //running on the pool
+                    invokeAll(tasks);
+                } else {
+                    for (LookaheadTask task : tasks) {
+                        task.compute();
+                    }
+                }
+            }
+
+            Candidate best = beam.get(0);
+            for (Candidate c : beam) {
+                if (c.value > best.value) {
+                	best = c;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * fork-join task for searching deeper below one root placement
+     */
+    private class LookaheadTask extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+        private final Candidate root;
+        private final int[] pieces;
+
+        LookaheadTask(Candidate root, int[] pieces) {
+            this.root = root;
+            this.pieces = pieces;
+        }
+
+        @Override
+        protected Void compute() {
+            root.value = new Search().best(root.board, pieces, 0, depth - 1) + heuristic.lineScore(root.lines);
+            return null;
+        }
+    }
+
+    /**
+     * scratch space for one search (move generators, batches and boards for every level),
+     * every task makes its own so tasks never share anything
+     */
+    private class Search {
+        private final MoveGenerator[] generators = new MoveGenerator[depth];
+        private final BoardBatch[] batches = new BoardBatch[depth];
+        private final Board[][] boards = new Board[depth][];
+        private final Tetromino piece = new Tetromino(0);
+
+        Search() {
+            for (int i = 0; i < depth; i++) {
+                generators[i] = new MoveGenerator();
+            }
+        }
+
+        /**
+         * method for adding every placement of a piece as a root candidate
+         */
+        void addRoots(List<Candidate> roots, Board board, int type, int start, boolean hold) {
+            MoveGenerator generator = generators[0];
+            int count = generator.generate(board, type, MoveGenerator.poseRotation(start), MoveGenerator.poseX(start), MoveGenerator.poseY(start));
+            for (int i = 0; i < count; i++) {
+                int pose = generator.getPlacement(i);
+                Board child = new Board(board);
+                int lines = lock(child, type, pose);
+                roots.add(new Candidate(hold, pose, child, lines, heuristic.evaluate(child, lines)));
+            }
+        }
+
+        /**
+         * method for the best score reachable by placing the next pieces
+         * (not counting lines cleared before this board, the caller adds those)
+         *
+         * @param board to place on
+         * @param upcoming piece types
+         * @param index of the piece to place now
+         * @param amount of pieces left to place
+         * @return best score
+         */
+        double best(Board board, int[] pieces, int index, int remaining) {
+            if (remaining == 0 || index >= pieces.length) {
+                return heuristic.evaluate(board, 0);
+            }
+
+            //searched this before?
+            long key = 0;
+            if (table != null) {
+                key = Zobrist.position(board, pieces, index, remaining);
+                double cached = table.get(key);
+                if (!Double.isNaN(cached)) {
+                	return cached;
+                }
+            }
+            double best = search(board, pieces, index, remaining);
+            if (table != null) {
+                table.put(key, best);
+            }
+            return best;
+        }
+
+        private double search(Board board, int[] pieces, int index, int remaining) {
+            int level = depth - remaining;
+            int type = pieces[index];
+            MoveGenerator generator = generators[level];
+            int count = generator.generate(board, type, 0, Tetromino.spawnX(type), Tetromino.spawnY(type));
+            if (count == 0) { //can't spawn -> game over
+            	return GAME_OVER;
+            }
+
+            //score every placement at once and keep the best few (simple insertion into the beam)
+            if (batches[level] == null) {
+                batches[level] = new BoardBatch(count);
+                boards[level] = new Board[beamWidth];
+                for (int i = 0; i < beamWidth; i++) {
+                    boards[level][i] = new Board();
+                }
+            }
+            BoardBatch batch = batches[level];
+            batch.clear(board);
+            for (int i = 0; i < count; i++) {
+                int pose = generator.getPlacement(i);
+                piece.type = type;
+                piece.setPose(MoveGenerator.poseRotation(pose), MoveGenerator.poseX(pose), MoveGenerator.poseY(pose));
+                batch.add(piece);
+            }
+            batch.evaluate(heuristic);
+
+            double[] scores = new double[beamWidth + 1];
+            int[] lanes = new int[beamWidth + 1];
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                double score = batch.getScore(i);
+
+                //move it up to where it belongs
+                int at = size;
+                while (at > 0 && scores[at - 1] < score) {
+                    scores[at] = scores[at - 1];
+                    lanes[at] = lanes[at - 1];
+                    at--;
+                }
+                scores[at] = score;
+                lanes[at] = i;
+                if (size < beamWidth) {
+                	size++;
+                }
+            }
+
+            if (remaining == 1 || index + 1 >= pieces.length) { //last level -> best board wins
+                return scores[0];
+            }
+            //only the beam gets real boards
+            Board[] beam = boards[level];
+            double best = GAME_OVER;
+            for (int i = 0; i < size; i++) {
+                beam[i].copyFrom(board);
+                lock(beam[i], type, generator.getPlacement(lanes[i]));
+                best = Math.max(best, best(beam[i], pieces, index + 1, remaining - 1) + heuristic.lineScore(batch.getLines(lanes[i])));
+            }
+            return best;
+        }
+
+        private int lock(Board board, int type, int pose) { //lock a piece and clear lines
+            piece.type = type;
+            piece.setPose(MoveGenerator.poseRotation(pose), MoveGenerator.poseX(pose), MoveGenerator.poseY(pose));
+            piece.merge(board);
+            return board.clearLines(piece.getTopRow(), piece.getBottomRow());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Controls.java
+ * @author V. Aiden
+ *
+ * Controls turns key events from the InputQueue into game inputs, one tick at a time
+ *
+ * every tick it applies the events that happened before the end of that tick (in order),
+ * a press always does its action right away even if the key is let go before the tick,
+ * then keys that are still held repeat:
+ * left/right wait DAS_TICKS after the first move and then move every ARR_TICKS,
+ * if both are held the last one pressed wins, soft drop and rotate repeat at their own rate,
+ * hold and hard drop never repeat (the key has to be let go first)
+ *
+ * it also remembers when the oldest input that hasn't been drawn yet happened,
+ * the game uses that to measure input to screen latency
+ */
+
+public class Controls {
+	//autorepeat in ticks (GameEngine.TICK_MS each)
+    public static final int DAS_TICKS = 15; //150ms before left/right starts repeating
+    public static final int ARR_TICKS = 5; //50ms between repeats after that
+    public static final int SOFT_DROP_TICKS = 6; //60ms
+    public static final int ROTATE_REPEAT_TICKS = 20; //200ms
+
+    private final InputQueue queue = new InputQueue(256);
+    private final boolean[] held = new boolean[Action.values().length];
+    private int direction = 0; //-1 left, 1 right, 0 neither
+    private int moveTimer, downTimer, rotateTimer; //ticks until the next repeat
+    private long pendingInput = 0; //time of the oldest input that isn't on screen yet (0 = none)
+
+    /**
+     * method for a key event (call it from the key handlers)
+     *
+     * @param action the key is bound to
+     * @param pressed (false for released)
+     */
+    public void keyEvent(Action action, boolean pressed) {
+        queue.offer(System.nanoTime(), action, pressed);
+    }
+
+    /**
+     * method for forgetting every held key and waiting event (new game)
+     */
+    public void reset() {
+        queue.clear();
+        for (int i = 0; i < held.length; i++) {
+            held[i] = false;
+        }
+        direction = 0;
+        pendingInput = 0;
+    }
+
+    /**
+     * method for applying the inputs of one tick
+     *
+     * @param engine
+     * @param end of the tick (nanoTime), events before it belong to this tick
+     */
+    public void tick(GameEngine engine, long tickEnd) {
+    	//keys that are still held repeat first, so a key pressed this tick waits its full delay
+        if (direction != 0 && --moveTimer <= 0) {
+            engine.step(direction < 0 ? Action.LEFT : Action.RIGHT);
+            moveTimer = ARR_TICKS;
+        }
+        if (held[Action.DOWN.ordinal()] && --downTimer <= 0) {
+            engine.step(Action.DOWN);
+            downTimer = SOFT_DROP_TICKS;
+        }
+        if (held[Action.ROTATE.ordinal()] && --rotateTimer <= 0) {
+            engine.step(Action.ROTATE);
+            rotateTimer = ROTATE_REPEAT_TICKS;
+        }
+
+        while (queue.peekTime() < tickEnd) {
+            long time = queue.peekTime();
+            Action action = queue.peekAction();
+            boolean pressed = queue.peekPressed();
+            queue.poll();
+            if (pressed) {
+                press(engine, action, time);
+            } else {
+                release(action);
+            }
+        }
+    }
+
+    private void press(GameEngine engine, Action action, long time) {
+        if (held[action.ordinal()]) { //the OS repeats key presses while a key is held, we do our own repeat
+        	return;
+        }
+        held[action.ordinal()] = true;
+        if (pendingInput == 0) {
+            pendingInput = time;
+        }
+
+        switch (action) {
+            case LEFT:
+            case RIGHT:
+                direction = action == Action.LEFT ? -1 : 1;
+                engine.step(action);
+                moveTimer = DAS_TICKS;
+                break;
+            case DOWN:
+                engine.step(action);
+                downTimer = SOFT_DROP_TICKS;
+                break;
+            case ROTATE:
+                engine.step(action);
+                rotateTimer = ROTATE_REPEAT_TICKS;
+                break;
+            case HOLD:
+                if (engine.canHold()) {
+                    engine.step(action);
+                }
+                break;
+            case HARD_DROP:
+                engine.step(action);
+                break;
+        }
+    }
+
+    private void release(Action action) {
+        held[action.ordinal()] = false;
+        if (action == Action.LEFT && direction < 0 || action == Action.RIGHT && direction > 0) {
+        	//fall back to the other direction if it is still held (it waits the full DAS again)
+            direction = held[Action.LEFT.ordinal()] ? -1 : held[Action.RIGHT.ordinal()] ? 1 : 0;
+            moveTimer = DAS_TICKS;
+        }
+    }
+
+    /**
+     * method for taking the time of the oldest input that hasn't been drawn yet (call it after drawing)
+     *
+     * @return nanoTime of the input, 0 if there wasn't one
+     */
+    public long takePendingInput() {
+        long time = pendingInput;
+        pendingInput = 0;
+        return time;
+    }
+
+    public InputQueue getQueue() {
+        return queue;
+    }
+}
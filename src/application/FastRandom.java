@@ -0,0 +1,80 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * FastRandom.java
+ * @author V. Aiden
+ * 
+ * FastRandom is a small seedable random number generator (xoshiro128**)
+ * unlike Math.random() it isn't shared between threads, so every game gets its own
+ * and the same seed always gives the same numbers
+ */
+
+public class FastRandom {
+	//generator state (must never be all zeros)
+    private int s0, s1, s2, s3;
+
+    /**
+     * constructor for random generator
+     *
+     * @param seed
+     */
+    public FastRandom(long seed) {
+    	//spread the seed over the 4 state ints with splitmix64
+        long a = splitMix(seed);
+        long b = splitMix(a);
+        s0 = (int) a;
+        s1 = (int) (a >>> 32);
+        s2 = (int) b;
+        s3 = (int) (b >>> 32);
+        if ((s0 | s1 | s2 | s3) == 0) {
+            s0 = 1;
+        }
+    }
+
+    /**
+     * constructor for a copy of another generator (continues with the same numbers)
+     *
+     * @param generator to copy
+     */
+    public FastRandom(FastRandom other) {
+        s0 = other.s0;
+        s1 = other.s1;
+        s2 = other.s2;
+        s3 = other.s3;
+    }
+
+    private static long splitMix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * method for the next random 32 bits
+     *
+     * @return random int
+     */
+    public int nextInt() {
+        int result = Integer.rotateLeft(s1 * 5, 7) * 9;
+        int t = s1 << 9;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Integer.rotateLeft(s3, 11);
+        return result;
+    }
+
+    /**
+     * method for a random number from 0 (inclusive) to bound (exclusive)
+     * uses multiply and shift instead of % (the bias is way too small to matter for 7 pieces)
+     *
+     * @param bound
+     * @return random int
+     */
+    public int nextInt(int bound) {
+        return (int) (((nextInt() & 0xFFFFFFFFL) * bound) >>> 32);
+    }
+}
@@ -0,0 +1,541 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * GameEngine.java
+ * @author V. Aiden
+ * 
+ * GameEngine holds all the game rules and game state without any JavaFX,
+ * the Tetris class drives it from its game loop and key presses and just draws whatever state it is in
+ * 
+ * this means games can also be played headless (no display and no JavaFX runtime),
+ * calling step(action) for inputs and tick() to move time forward
+ * 
+ * time moves in fixed ticks of TICK_MS, gravity is a timer that counts up by TICK_MS every tick
+ * and drops the tetromino every dropInterval, so speeding up is just changing a number and
+ * the same inputs on the same ticks always give the same game (replays depend on this)
+ * 
+ * games are seeded so the same seed always gives the same tetromino order,
+ * every engine has its own piece generator so parallel games don't share one
+ * 
+ * snapshot() saves the whole game state in a small immutable Snapshot and restore() puts it back,
+ * snapshots taken one after another share everything that didn't change (board rows, piece generator)
+ * so taking one every tick is cheap, they are used for undo, replay seeking and searching ahead
+ * 
+ * CLASS SUMMARY:
+ * Game state (board, current, hold, next queue, score)
+ * Inputs (step)
+ * Gravity (tick)
+ * Line clears and speeding up
+ * Spawning and game over
+ * Garbage lines (multiplayer)
+ * Snapshots
+ * 
+ */
+
+public class GameEngine {
+	//constants
+    public static final int PREVIEW_SIZE = 3; //amount of tetrominos waiting in the queue
+    public static final int LINE_SCORE = 100; //points for each cleared line
+    public static final double START_DROP_INTERVAL = 500; //milliseconds
+    public static final int TICK_MS = 10; //length of one simulation tick
+    public static final int TICKS_PER_SECOND = 1000 / TICK_MS;
+    public static final int GARBAGE_COLOR = 1; //garbage uses the O tile (there is no gray one)
+
+    //game state
+    private final Board board = new Board();
+    private Tetromino current; //currently falling tetromino
+    private Tetromino hold = null; //tetromino being held
+    private boolean canHold = true; //prevent multi swaps
+    private PieceQueue nextQueue = new PieceQueue(PREVIEW_SIZE + 1); //queue for next tetrominos
+    private long seed;
+    private final PieceGenerator.Mode mode; //uniform or 7-bag
+    private PieceGenerator generator;
+    private boolean gameOver = false;
+
+    //stats
+    private int score = 0;
+    private int lines = 0;
+    private long ticks = 0; //amount of simulation ticks so far (game length)
+    private long pieces = 0; //amount of tetrominos taken from the queue
+    private long drops = 0; //amount of gravity drops
+    private long locks = 0; //amount of tetrominos locked into the board
+
+    //tetromino dropping variables
+    private double dropInterval = START_DROP_INTERVAL; // milliseconds
+    private double dropTimer = 0; //milliseconds since the last gravity drop
+    private double minDropInterval = 100; // minimum speed limit
+    private double dropAcceleration = 50; // how much to speed up each time (ms)
+
+    private ReplayRecorder recorder = null; //records every input (null = not recording)
+
+    /**
+     * constructor for a new game with a random seed
+     */
+    public GameEngine() {
+        this(System.nanoTime());
+    }
+
+    /**
+     * constructor for a new game
+     *
+     * @param seed for the tetromino order
+     */
+    public GameEngine(long seed) {
+        this(seed, PieceGenerator.Mode.UNIFORM);
+    }
+
+    /**
+     * constructor for a new game
+     *
+     * @param seed for the tetromino order
+     * @param mode of the piece generator
+     */
+    public GameEngine(long seed, PieceGenerator.Mode mode) {
+        this.mode = mode;
+        reset(seed);
+    }
+
+    /**
+     * constructor for a copy of another game (copies are never recording)
+     *
+     * @param game to copy
+     */
+    public GameEngine(GameEngine other) {
+        board.copyFrom(other.board);
+        current = new Tetromino(other.current);
+        hold = other.hold == null ? null : new Tetromino(other.hold);
+        canHold = other.canHold;
+        nextQueue = new PieceQueue(other.nextQueue);
+        seed = other.seed;
+        mode = other.mode;
+        generator = other.generator.copy();
+        gameOver = other.gameOver;
+        score = other.score;
+        lines = other.lines;
+        ticks = other.ticks;
+        pieces = other.pieces;
+        drops = other.drops;
+        locks = other.locks;
+        dropInterval = other.dropInterval;
+        dropTimer = other.dropTimer;
+        minDropInterval = other.minDropInterval;
+        dropAcceleration = other.dropAcceleration;
+    }
+
+    /**
+     * method to restart the same game (same seed)
+     */
+    public void reset() {
+        reset(seed);
+    }
+
+    /**
+     * method to reset the game
+     *
+     * @param seed for the tetromino order
+     */
+    public void reset(long seed) {
+        this.seed = seed;
+    	//intialize all variables
+        score = 0;
+        lines = 0;
+        ticks = 0;
+        pieces = 0;
+        drops = 0;
+        locks = 0;
+        board.clear();
+        nextQueue.clear();
+        hold = null;
+        canHold = true;
+        gameOver = false;
+        dropInterval = START_DROP_INTERVAL; // reset speed at game start
+        dropTimer = 0;
+        generator = PieceGenerator.create(mode, seed); //same seed -> same game
+
+        //generate new tetrominos to kickstart the game
+        for (int i = 0; i < PREVIEW_SIZE; i++) {
+        	nextQueue.add(nextType()); //add new from 7 tetromino shapes
+        }
+
+        current = new Tetromino(nextQueue.poll()); //get new current tetromino
+        nextQueue.add(nextType()); //add new tetrominos to queue
+        pieces = 1;
+    }
+
+    /**
+     * method for applying one player input
+     *
+     * @param action
+     */
+    public void step(Action action) {
+        if (gameOver) { //no inputs after the game has ended
+        	return;
+        }
+        if (recorder != null) {
+            recorder.record(ticks, action);
+        }
+
+        switch (action) {
+            case LEFT:
+                move(-1);
+                break;
+            case RIGHT:
+                move(1);
+                break;
+            case DOWN:
+                moveDown();
+                break;
+            case ROTATE:
+                current.rotate(board);
+                break;
+            case HOLD:
+                holdPiece();
+                break;
+            case HARD_DROP:
+                current.move(0, current.dropDistance(board));
+                lockPiece();
+                break;
+        }
+    }
+
+    /**
+     * method for moving the game forward one tick (TICK_MS), gravity drops the tetromino every dropInterval
+     */
+    public void tick() {
+        if (gameOver) {
+        	return;
+        }
+        ticks++;
+        dropTimer += TICK_MS;
+        if (dropTimer >= dropInterval) { //time for a gravity drop
+            dropTimer -= dropInterval; //keep the leftover so the speed is exact
+            drops++;
+            moveDown();
+        }
+    }
+
+    /**
+     * method for adding garbage lines under the stack (multiplayer attacks, they are not recorded in replays)
+     *
+     * @param amount of lines
+     * @param hole column
+     */
+    public void addGarbage(int lines, int hole) {
+        if (gameOver || lines <= 0) {
+        	return;
+        }
+        boolean toppedOut = board.insertGarbage(lines, hole, GARBAGE_COLOR);
+        //the falling tetromino is pushed up with the stack if it would end up inside it (not past the top)
+        for (int up = 0; up < lines && !current.canMove(board, 0, 0) && current.getTopRow() > 0; up++) {
+            current.move(0, -1);
+        }
+        if (toppedOut || !current.canMove(board, 0, 0)) {
+            gameOver = true;
+        }
+    }
+
+    private int nextType() { //next tetromino type from the generator
+        return generator.next();
+    }
+
+    private void move(int dx) { //move current tetromino left/right
+    	//if current tetromino can move left/right
+        if (current.canMove(board, dx, 0)) {
+        	//move it left/right
+        	current.move(dx, 0);
+        }
+    }
+
+    private void moveDown() { //move down current tetromino
+        if (current.canMove(board, 0, 1)) { //if current tetromino can move down
+        	//move it down
+            current.move(0, 1);
+        } else {
+            lockPiece();
+        }
+    }
+
+    private void lockPiece() { //lock the current tetromino where it is and bring in the next one
+    	//lock it in place in the grid
+        current.merge(board);
+        locks++;
+        //clear line method (only the rows it was merged into can be full)
+        clearLines(current.getTopRow(), current.getBottomRow());
+        //get a new current tetromino from the queue
+        spawn(nextQueue.poll());
+        //add a new tetromino to the queue
+        nextQueue.add(nextType());
+        //reset the hold restriction
+        canHold = true;
+    }
+
+    private void spawn(int type) { //spawn a new current tetromino at the top
+        current = new Tetromino(type);
+        pieces++;
+
+        //if the new tetromino doesn't fit at the top -> game over
+        if (!current.canMove(board, 0, 0)) {
+            gameOver = true;
+        }
+    }
+
+    private void holdPiece() { //hold method
+        if (!canHold) { //if you cant hold
+        	return; //end
+        }
+
+        if (hold == null) { //no tetromino in hold spot
+        	//put the tetromino in the hold spot
+            hold = new Tetromino(current.type);
+            //get a new current tetromino from the queue
+            current = new Tetromino(nextQueue.poll());
+            //add a new tetromino to the queue
+            nextQueue.add(nextType());
+            pieces++;
+        } else {
+        	//swap out the tetromino
+            Tetromino temp = hold;
+            //put the tetromino in the hold spot
+            hold = new Tetromino(current.type);
+            //change the current tetromino to the hold one
+            current = new Tetromino(temp.type);
+        }
+        //remove hold capability to prevent hold spamming
+        canHold = false;
+    }
+
+    private void clearLines(int from, int to) { //method for clearing lines
+    	//the board removes full rows (each row is a bitmask so a full row is one compare)
+        int cleared = board.clearLines(from, to);
+
+        //increase the score
+        score += LINE_SCORE * cleared;
+        lines += cleared;
+
+        //if line was cleared -> speed up the drop speed
+        if (cleared > 0) {
+            speedUpDrop();
+        }
+    }
+
+    private void speedUpDrop() { //method to speed up the drop speed
+        if (dropInterval > minDropInterval) {
+            dropInterval -= dropAcceleration;  // decrease delay to speed up
+            if (dropInterval < minDropInterval) {
+                dropInterval = minDropInterval;  // clamp to minimum speed
+            }
+        }
+    }
+
+    /**
+     * an immutable copy of the whole game state,
+     * board rows and the piece generator are shared with the snapshot it was taken after when they didn't change
+     */
+    public static final class Snapshot {
+        private final long[][] boardRows; //Board chunks, never changed
+        private final long boardHash;
+        private final int currentType, rotation, x, y;
+        private final int holdType; //-1 = nothing held
+        private final boolean canHold, gameOver;
+        private final long queue; //3 bits per type, first one lowest
+        private final int queueSize;
+        private final PieceGenerator generator; //never dealt from, restore copies it
+        private final long seed;
+        private final PieceGenerator.Mode mode;
+        private final int score, lines;
+        private final long ticks, pieces, drops, locks;
+        private final double dropInterval, dropTimer, minDropInterval, dropAcceleration;
+
+        private Snapshot(GameEngine game, Snapshot previous) {
+            boolean sameGame = previous != null && previous.seed == game.seed && previous.mode == game.mode;
+            boardRows = game.board.snapshotRows(previous == null ? null : previous.boardRows);
+            boardHash = game.board.getHash();
+            currentType = game.current.type;
+            rotation = game.current.getRotation();
+            x = game.current.getX();
+            y = game.current.getY();
+            holdType = game.hold == null ? -1 : game.hold.type;
+            canHold = game.canHold;
+            gameOver = game.gameOver;
+            long packed = 0;
+            for (int i = game.nextQueue.size() - 1; i >= 0; i--) {
+                packed = packed << 3 | game.nextQueue.peek(i);
+            }
+            queue = packed;
+            queueSize = game.nextQueue.size();
+            //the generator only moves when a tetromino is taken, so the same piece count means the same state
+            generator = sameGame && previous.pieces == game.pieces ? previous.generator : game.generator.copy();
+            seed = game.seed;
+            mode = game.mode;
+            score = game.score;
+            lines = game.lines;
+            ticks = game.ticks;
+            pieces = game.pieces;
+            drops = game.drops;
+            locks = game.locks;
+            dropInterval = game.dropInterval;
+            dropTimer = game.dropTimer;
+            minDropInterval = game.minDropInterval;
+            dropAcceleration = game.dropAcceleration;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * method for saving the game state
+     *
+     * @return snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this, null);
+    }
+
+    /**
+     * method for saving the game state, sharing whatever didn't change since an older snapshot of this game
+     *
+     * @param previous snapshot (null for none), taking them in order shares the most
+     * @return snapshot
+     */
+    public Snapshot snapshot(Snapshot previous) {
+        return new Snapshot(this, previous);
+    }
+
+    /**
+     * method for putting the game back to a snapshot (the recorder is kept, nothing is recorded)
+     *
+     * @param snapshot of a game with the same generator mode
+     */
+    public void restore(Snapshot snapshot) {
+        if (snapshot.mode != mode) {
+            throw new IllegalArgumentException("Snapshot is from a " + snapshot.mode + " game, this one is " + mode);
+        }
+        board.restoreRows(snapshot.boardRows, snapshot.boardHash);
+        current = new Tetromino(snapshot.currentType);
+        current.setPose(snapshot.rotation, snapshot.x, snapshot.y);
+        hold = snapshot.holdType < 0 ? null : new Tetromino(snapshot.holdType);
+        canHold = snapshot.canHold;
+        gameOver = snapshot.gameOver;
+        nextQueue.clear();
+        for (int i = 0; i < snapshot.queueSize; i++) {
+            nextQueue.add((int) (snapshot.queue >>> (3 * i)) & 7);
+        }
+        generator = snapshot.generator.copy();
+        seed = snapshot.seed;
+        score = snapshot.score;
+        lines = snapshot.lines;
+        ticks = snapshot.ticks;
+        pieces = snapshot.pieces;
+        drops = snapshot.drops;
+        locks = snapshot.locks;
+        dropInterval = snapshot.dropInterval;
+        dropTimer = snapshot.dropTimer;
+        minDropInterval = snapshot.minDropInterval;
+        dropAcceleration = snapshot.dropAcceleration;
+    }
+
+    //getters used by the UI and other game drivers
+    public Board getBoard() {
+        return board;
+    }
+
+    public Tetromino getCurrent() {
+        return current;
+    }
+
+    public Tetromino getHold() {
+        return hold;
+    }
+
+    public boolean canHold() {
+        return canHold;
+    }
+
+    public int peekNext() {
+        return nextQueue.peek();
+    }
+
+    public PieceQueue getNextQueue() {
+        return nextQueue;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getPieces() {
+        return pieces;
+    }
+
+    public long getDrops() {
+        return drops;
+    }
+
+    public long getLocks() {
+        return locks;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public PieceGenerator.Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * method for recording every input from now on (null to stop)
+     *
+     * @param recorder
+     */
+    public void setRecorder(ReplayRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public double getDropInterval() {
+        return dropInterval;
+    }
+
+    /**
+     * method for how far along the next gravity drop is (used to draw the falling tetromino smoothly)
+     *
+     * @return 0 right after a drop, almost 1 right before the next one
+     */
+    public double getDropProgress() {
+        return Math.min(1, dropTimer / dropInterval);
+    }
+
+    public double getDropAcceleration() {
+        return dropAcceleration;
+    }
+
+    public void setDropAcceleration(double dropAcceleration) {
+        this.dropAcceleration = dropAcceleration;
+    }
+
+    public double getMinDropInterval() {
+        return minDropInterval;
+    }
+
+    public void setMinDropInterval(double minDropInterval) {
+        this.minDropInterval = minDropInterval;
+    }
+}
@@ -0,0 +1,291 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * GameServer.java
+ * @author V. Aiden
+ *
+ * GameServer hosts lots of games at once over TCP (see Protocol for the messages)
+ *
+ * HOW IT RUNS:
+ * there is no thread per player, a few loop threads (about one per core) each own a share of the
+ * sessions, a loop waits on its selector for input until the next tick is due and then ticks every
+ * one of its sessions, all loops use the same tick clock (start + n * TICK_MS) so every game on the
+ * server moves forward at the same moments
+ *
+ * a session is a few KB (a GameEngine and two small fixed buffers) so one server can hold
+ * thousands of them, the limit is how many sessions a loop can tick in TICK_MS
+ *
+ * connections are paired up as they come in (1st with 2nd, 3rd with 4th...) and both of a pair go
+ * to the same loop, so sending garbage to the opponent never crosses threads, both also get the
+ * same seed so they get the same tetrominos
+ *
+ * usage: GameServer [--port N] [--loops N] [--seed N] [--mode uniform|bag]
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import simpleIO.Console;
+
+public class GameServer {
+    public static final long TICK_NS = GameEngine.TICK_MS * 1_000_000L;
+    private static final int MAX_CATCH_UP = 10; //ticks a loop runs back to back before it skips ahead
+    private static final int STATS_SECONDS = 5;
+
+    private final ServerSocketChannel server;
+    private final Loop[] loops;
+    private final long seed;
+    private final PieceGenerator.Mode mode;
+    private final long start = System.nanoTime(); //tick 0 of every loop
+    private volatile boolean running = true;
+    private volatile int accepted = 0; //only the accept thread writes it
+
+    /**
+     * one loop thread, it owns its sessions so they are never touched by another thread
+     */
+    private class Loop implements Runnable {
+        private final Selector selector;
+        private final Queue<ServerSession> incoming = new ConcurrentLinkedQueue<>(); //from the accept thread
+        private final List<ServerSession> sessions = new ArrayList<>();
+        private ServerSession waiting = null; //first of a pair, waiting for its opponent
+        private long tick = 0; //ticks done so far
+
+        //read by the stats printer
+        private volatile int sessionCount = 0;
+        private volatile long ticksDone = 0, skippedTicks = 0, tickP99 = 0;
+        private final LatencyHistogram tickTime = new LatencyHistogram(); //time to tick every session once
+
+        Loop() throws IOException {
+            selector = Selector.open();
+        }
+
+        void add(ServerSession session) {
+            incoming.add(session);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long lastStats = System.nanoTime();
+            while (running) {
+                try {
+                    long wait = start + (tick + 1) * TICK_NS - System.nanoTime();
+                    if (wait > 0) {
+                        selector.select(Math.max(1, wait / 1_000_000));
+                    } else {
+                        selector.selectNow();
+                    }
+                } catch (IOException e) {
+                    Console.print("Selector failed: " + e.getMessage());
+                    return;
+                }
+                register();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    ServerSession session = (ServerSession) key.attachment();
+                    if (!key.isValid()) {
+                    	continue;
+                    }
+                    if (key.isReadable()) {
+                        session.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        session.flush();
+                    }
+                }
+
+                //every tick that is due (a loop that fell too far behind skips ahead instead of rushing)
+                long now = System.nanoTime();
+                for (int n = 0; start + (tick + 1) * TICK_NS <= now; n++) {
+                    if (n == MAX_CATCH_UP) {
+                        long due = (now - start) / TICK_NS;
+                        skippedTicks += due - tick;
+                        tick = due;
+                        break;
+                    }
+                    tickAll();
+                    tick++;
+                }
+
+                if (now - lastStats >= STATS_SECONDS * 1_000_000_000L) {
+                    tickP99 = tickTime.percentile(99);
+                    tickTime.reset();
+                    lastStats = now;
+                }
+            }
+        }
+
+        private void register() { //new sessions from the accept thread
+            ServerSession session;
+            while ((session = incoming.poll()) != null) {
+                try {
+                    SocketChannel channel = session.getChannel();
+                    session.setKey(channel.register(selector, SelectionKey.OP_READ, session));
+                } catch (ClosedChannelException e) {
+                    continue;
+                }
+                sessions.add(session);
+                session.flush(); //HELLO
+                if (waiting != null && !waiting.isClosed()) {
+                    waiting.setOpponent(session);
+                    session.setOpponent(waiting);
+                    waiting = null;
+                } else {
+                    waiting = session;
+                }
+            }
+            sessionCount = sessions.size();
+        }
+
+        private void tickAll() {
+            long begin = System.nanoTime();
+            for (int i = 0; i < sessions.size(); i++) {
+                ServerSession session = sessions.get(i);
+                session.tick();
+                session.flush();
+                if (session.isClosed()) { //swap remove
+                    sessions.set(i, sessions.get(sessions.size() - 1));
+                    sessions.remove(sessions.size() - 1);
+                    i--;
+                }
+            }
+            tickTime.record(System.nanoTime() - begin);
+            sessionCount = sessions.size();
+            ticksDone++;
+        }
+    }
+
+    /**
+     * constructor for game server (call run() to start it)
+     *
+     * @param port
+     * @param amount of loop threads
+     * @param seed for the games
+     * @param piece generator mode
+     */
+    public GameServer(int port, int loopCount, long seed, PieceGenerator.Mode mode) throws IOException {
+        this.seed = seed;
+        this.mode = mode;
+        server = ServerSocketChannel.open();
+        server.socket().setReuseAddress(true); //restarting right away works even with old connections in TIME_WAIT
+        server.bind(new InetSocketAddress(port), 1024);
+        loops = new Loop[Math.max(1, loopCount)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new Loop();
+        }
+    }
+
+    /**
+     * method for starting the loops and accepting connections (blocks until stop())
+     */
+    public void run() throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            Thread thread = new Thread(loops[i], "game-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Thread stats = new Thread(this::printStats, "game-stats");
+        stats.setDaemon(true);
+        stats.start();
+
+        while (running) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                if (!running) {
+                	break;
+                }
+                throw e;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            int pair = accepted / 2;
+            //both of a pair go to the same loop and get the same seed
+            ServerSession session = new ServerSession(accepted++, channel, TournamentRunner.gameSeed(seed, pair), mode);
+            loops[pair % loops.length].add(session);
+        }
+    }
+
+    /**
+     * method for stopping the server (the loops stop after their current tick)
+     */
+    public void stop() {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException e) {
+        	//closing anyway
+        }
+        for (Loop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    private void printStats() {
+        long lastTicks = 0;
+        while (running) {
+            try {
+                Thread.sleep(STATS_SECONDS * 1000L);
+            } catch (InterruptedException e) {
+                return;
+            }
+            int sessions = 0;
+            long ticks = 0, skipped = 0, p99 = 0;
+            for (Loop loop : loops) {
+                sessions += loop.sessionCount;
+                ticks += loop.ticksDone;
+                skipped += loop.skippedTicks;
+                p99 = Math.max(p99, loop.tickP99);
+            }
+            Console.print(String.format("%d sessions (%d connections so far), %.0f ticks/s per loop, tick p99 %.2f ms, %d ticks skipped",
+                    sessions, accepted, (ticks - lastTicks) / (double) STATS_SECONDS / loops.length, p99 / 1e6, skipped));
+            lastTicks = ticks;
+        }
+    }
+
+    public int getSessionCount() {
+        int sessions = 0;
+        for (Loop loop : loops) {
+            sessions += loop.sessionCount;
+        }
+        return sessions;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = Protocol.DEFAULT_PORT;
+        int loopCount = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        PieceGenerator.Mode mode = PieceGenerator.Mode.BAG;
+
+        //read the options
+        Map<String, String> options = Options.parse(args, 0, "--port", "--loops", "--seed", "--mode");
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String value = option.getValue();
+            switch (option.getKey()) { //unknown options were already rejected
+                case "--port": port = Integer.parseInt(value); break;
+                case "--loops": loopCount = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--mode": mode = PieceGenerator.Mode.valueOf(value.toUpperCase()); break;
+            }
+        }
+
+        GameServer server = new GameServer(port, loopCount, seed, mode);
+        Console.print("Game server on port " + port + " with " + loopCount + " loops");
+        server.run();
+    }
+}
@@ -0,0 +1,113 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Heuristic.java
+ * @author V. Aiden
+ * 
+ * Heuristic scores a board for the AI, higher is better
+ * it is a weighted sum of:
+ * holes      - empty cells with a block somewhere above them
+ * height     - aggregate height (sum of every column height)
+ * bumpiness  - sum of height differences between neighbouring columns
+ * lines      - lines cleared by the placement
+ * wells      - how deep every column sits below both of its neighbours (walls count as full)
+ * 
+ * holes are counted from the row bitmasks, one row at a time from the top,
+ * and the heights come straight from the column tops the board keeps, so there is no per cell loop
+ */
+
+public class Heuristic {
+	//feature indexes into the weights array
+    public static final int HOLES = 0;
+    public static final int HEIGHT = 1;
+    public static final int BUMPINESS = 2;
+    public static final int LINES = 3;
+    public static final int WELLS = 4;
+    public static final int FEATURES = 5;
+
+    //default weights (well known hand tuned values for the first 4 features, wells was added later
+    //and is off so the bot plays the same, WeightTuner finds weights that use it)
+    public static final double[] DEFAULT_WEIGHTS = {-0.35663, -0.510066, -0.184483, 0.760666, 0};
+
+    private final double[] weights;
+
+    /**
+     * constructor for the default heuristic
+     */
+    public Heuristic() {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    /**
+     * constructor for heuristic
+     *
+     * @param weights (one per feature)
+     */
+    public Heuristic(double[] weights) {
+        if (weights.length != FEATURES) {
+            throw new IllegalArgumentException("Expected " + FEATURES + " weights but got " + weights.length);
+        }
+        this.weights = weights.clone();
+    }
+
+    /**
+     * method for scoring a board
+     *
+     * @param board (after lines were cleared)
+     * @param lines cleared to get there
+     * @return score (higher is better)
+     */
+    public double evaluate(Board board, int lines) {
+        int seen = 0; //columns that already have a block above this row
+        int holes = 0;
+        for (int y = 0; y < Board.ROWS; y++) {
+            int row = board.getRow(y);
+            //empty cells under a seen column are holes
+            holes += Integer.bitCount(seen & ~row);
+            seen |= row;
+        }
+
+        int height = 0, bumpiness = 0, wells = 0;
+        for (int x = 0; x < Board.COLUMNS; x++) {
+            int h = board.getColumnHeight(x);
+            height += h;
+            if (x > 0) {
+                bumpiness += Math.abs(h - board.getColumnHeight(x - 1));
+            }
+            int left = x > 0 ? board.getColumnHeight(x - 1) : Board.ROWS;
+            int right = x < Board.COLUMNS - 1 ? board.getColumnHeight(x + 1) : Board.ROWS;
+            wells += Math.max(0, Math.min(left, right) - h);
+        }
+
+        return score(holes, height, bumpiness, lines, wells);
+    }
+
+    /**
+     * method for the weighted sum of features that were already counted (BoardBatch counts them for many boards at once)
+     *
+     * @param holes
+     * @param aggregate height
+     * @param bumpiness
+     * @param lines cleared
+     * @param wells
+     * @return score (higher is better)
+     */
+    public double score(int holes, int height, int bumpiness, int lines, int wells) {
+        return weights[HOLES] * holes + weights[HEIGHT] * height + weights[BUMPINESS] * bumpiness + weights[LINES] * lines
+                + weights[WELLS] * wells;
+    }
+
+    /**
+     * method for the part of the score that comes from cleared lines (evaluate is linear in lines)
+     *
+     * @param lines cleared
+     * @return score
+     */
+    public double lineScore(int lines) {
+        return weights[LINES] * lines;
+    }
+
+    public double[] getWeights() {
+        return weights.clone();
+    }
+}
@@ -1,84 +1,128 @@
 package application;
 /**
  * ICS4U RST Final Project
- * Point.java
+ * HighScoreHandler.java
  * @author V. Aiden
- * 
- * HighScoreHandler is used to save and load high scores from a text file
+ *
+ * HighScoreHandler is used to save and load high scores
  * This class is used to separate it from the main class and make it easier to debug
+ *
+ * the scores now live in a Leaderboard (append-only log in data/leaderboard.log), it is opened
+ * once and after that reading the high score or the top scores never touches the disk,
+ * the old data/highscores.txt is only read once to carry the old high score over
+ *
+ * the game calls these through PersistenceService so the disk is only touched on its writer thread
  */
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
 
 import simpleIO.Console;
 
 public class HighScoreHandler {
+	//constants
+	public static final String LEADERBOARD_FILE = "data/leaderboard.log";
+	private static final String LEGACY_FILE = "data/highscores.txt";
+	public static final int LEADERBOARD_SIZE = 10;
+
+	private static Leaderboard leaderboard; //opened the first time it is needed
+
+	/**
+	 * method for getting the leaderboard, opens the log the first time
+	 *
+	 * @return leaderboard (only in memory if the log can't be opened)
+	 */
+	public static synchronized Leaderboard getLeaderboard() {
+		if (leaderboard == null) {
+			try {
+				leaderboard = new Leaderboard(Paths.get(LEADERBOARD_FILE), LEADERBOARD_SIZE);
+			} catch (IOException e) {
+				Console.print("Problems opening the leaderboard: " + e.getMessage());
+				leaderboard = new Leaderboard(LEADERBOARD_SIZE);
+			}
+
+			if (leaderboard.getRecordCount() == 0) { //first time -> bring over the old high score
+				int old = loadLegacyHighScore();
+				if (old > 0) {
+					saveScore(new ScoreRecord("Player", old, 0, 0, System.currentTimeMillis(), ""));
+				}
+			}
+		}
+		return leaderboard;
+	}
+
 	//load the existing high score for display
 	public static int loadHighScore() {
+		return getLeaderboard().getHighScore();
+	}
+
+	/**
+	 * method for the best scores (best first)
+	 *
+	 * @return top scores
+	 */
+	public static List<ScoreRecord> getTopScores() {
+		return getLeaderboard().getTop();
+	}
+
+	/**
+     * method to save a finished game to the leaderboard
+     *
+     * @param record of the game
+     * @return true if it made the top scores
+     */
+    public static boolean saveScore(ScoreRecord record) {
+        return saveScores(Collections.singletonList(record))[0];
+    }
+
+    /**
+     * method to save a batch of finished games with one write
+     *
+     * @param records
+     * @return for every record true if it made the top scores (all false if they couldn't be saved)
+     */
+    public static boolean[] saveScores(List<ScoreRecord> records) {
+        try {
+        	return getLeaderboard().addAll(records);
+        } catch (IOException e) {
+        	Console.print("Error writing to file: " + e.getMessage());
+        	return new boolean[records.size()];
+        }
+    }
+
+	//high score from the old one line text file
+	private static int loadLegacyHighScore() {
 		//file reading from U3 A4
 		FileReader tetrisFile;
 	    BufferedReader tetrisStream;
-	    
+
         try {
         	//load highscores.txt
-        	tetrisFile = new FileReader("data/highscores.txt");
+        	tetrisFile = new FileReader(LEGACY_FILE);
         	tetrisStream = new BufferedReader(tetrisFile);
-        	
+
         	//read the first line and set high score to it
             String line = tetrisStream.readLine();
-            int highScore = Integer.parseInt(line);
-            
+            tetrisStream.close(); //close it!!
             if (line != null) { //if there is a score there then return it
-            	tetrisStream.close(); //close it!!
-                return highScore;
+                return Integer.parseInt(line.trim());
             }
-            //if not then close and return 0
-            tetrisStream.close();
-            
+
             //exceptions copied from U3 A4
         } catch (FileNotFoundException e) {
-            Console.print("No file was found: " + e.getMessage());
+            return 0; //nothing to bring over
           } catch (IOException e) {
             Console.print("Problems reading the file: " + e.getMessage());
           } catch (NumberFormatException e) {
             Console.print("File not formatted properly: " + e.getMessage());
           }
-        
+
         //default to 0 if there is no high score
         return 0;
     }
-	
-	/**
-     * method to save new highscore to the txt file
-     *
-     * @param new high score
-     */
-    public static void saveHighScore(int score) {
-    	//file writing from U3 A4
-    	FileWriter tetrisFile;
-    	PrintWriter tetrisWriter;
-    	
-        try {
-        	//load highscores.txt
-        	tetrisFile = new FileWriter("data/highscores.txt");
-        	tetrisWriter = new PrintWriter(tetrisFile);
-        	
-        	//make the first line to the new high score (overwrite the old one)
-        	tetrisWriter.println(String.valueOf(score));
-        	//CLOSE IT
-        	tetrisFile.close();
-        	
-        	Console.print("File saved successfully");
-        	
-        	//exception
-        } catch (IOException e) {
-          Console.print("Error writing to file: " + e.getMessage());
-        }
-    }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,146 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Histogram.java
+ * @author V. Aiden
+ * 
+ * Histogram counts values into fixed width buckets (plus one overflow bucket)
+ * every worker thread fills its own histogram and they are merged at the end,
+ * so recording a value is just an array increment with no locking
+ */
+
+public class Histogram {
+    private final long bucketWidth;
+    private final long[] counts; //last bucket is for everything too big
+    private long total = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * constructor for histogram
+     *
+     * @param width of each bucket
+     * @param amount of buckets (not counting overflow)
+     */
+    public Histogram(long bucketWidth, int buckets) {
+        this.bucketWidth = bucketWidth;
+        this.counts = new long[buckets + 1];
+    }
+
+    /**
+     * method for recording a value (negative values go in the first bucket)
+     *
+     * @param value
+     */
+    public void record(long value) {
+        long bucket = Math.max(0, value / bucketWidth);
+        counts[(int) Math.min(bucket, counts.length - 1)]++;
+        total++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * method for adding another histogram's counts into this one
+     *
+     * @param other histogram (must have the same buckets)
+     */
+    public void merge(Histogram other) {
+        if (other.bucketWidth != bucketWidth || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Histograms have different buckets");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * method for estimating a percentile (lower edge of the bucket it lands in)
+     *
+     * @param percentile (0-100)
+     * @return value
+     */
+    public long percentile(double percentile) {
+        if (total == 0) {
+        	return 0;
+        }
+        long target = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, target)) {
+                return i == counts.length - 1 ? max : Math.min(max, Math.max(min, i * bucketWidth));
+            }
+        }
+        return max;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public double getMean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    public long getMin() {
+        return total == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return total == 0 ? 0 : max;
+    }
+
+    /**
+     * method for a one line summary
+     *
+     * @return mean, min, percentiles and max
+     */
+    public String summary() {
+        return String.format("mean %.1f  min %d  p50 %d  p90 %d  p99 %d  max %d",
+                getMean(), getMin(), percentile(50), percentile(90), percentile(99), getMax());
+    }
+
+    /**
+     * method for drawing the histogram as text bars (empty buckets are skipped)
+     *
+     * @param width of the longest bar
+     * @return multi line string
+     */
+    public String chart(int width) {
+        long most = 1;
+        for (long c : counts) {
+            most = Math.max(most, c);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+            	continue;
+            }
+            String label;
+            if (i == counts.length - 1) {
+                label = (i * bucketWidth) + "+";
+            } else if (bucketWidth == 1) {
+                label = String.valueOf(i);
+            } else {
+                label = (i * bucketWidth) + "-" + ((i + 1) * bucketWidth - 1);
+            }
+            sb.append(String.format("%14s | %-" + Math.max(1, width) + "s %d%n", label, bar((int) (counts[i] * width / most)), counts[i]));
+        }
+        return sb.toString();
+    }
+
+    private static String bar(int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append('#');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * InputQueue.java
+ * @author V. Aiden
+ *
+ * InputQueue passes key presses and releases (with the time they happened) from the key handlers
+ * to the game loop, so a tap shorter than a frame is never lost and every input can be applied
+ * on the exact tick it happened in
+ *
+ * it is a lock-free ring buffer for one producer and one consumer: the producer only writes the tail,
+ * the consumer only writes the head, and each publishes with an ordered write (lazySet) after the slot
+ * is ready, events are stored in two primitive arrays so nothing is made per event
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InputQueue {
+    private static final Action[] ACTIONS = Action.values();
+
+    private final long[] times; //nanoTime of each event
+    private final int[] codes; //action ordinal << 1 | 1 if pressed
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); //next event to read (only the consumer writes it)
+    private final AtomicLong tail = new AtomicLong(); //next free slot (only the producer writes it)
+    private long cachedHead = 0; //producer's last look at head, saves reading it every offer
+    private long dropped = 0; //events thrown away because the queue was full
+
+    /**
+     * constructor for input queue
+     *
+     * @param capacity (rounded up to a power of two)
+     */
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        times = new long[size];
+        codes = new int[size];
+        mask = size - 1;
+    }
+
+    /**
+     * method for adding an event (producer thread only)
+     *
+     * @param time (System.nanoTime)
+     * @param action the key is bound to
+     * @param pressed (false for released)
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean offer(long time, Action action, boolean pressed) {
+        long t = tail.get();
+        if (t - cachedHead > mask) { //looks full, check where the consumer really is
+            cachedHead = head.get();
+            if (t - cachedHead > mask) {
+                dropped++;
+                return false;
+            }
+        }
+        int slot = (int) t & mask;
+        times[slot] = time;
+        codes[slot] = action.ordinal() << 1 | (pressed ? 1 : 0);
+        tail.lazySet(t + 1); //publish after the slot is written
+        return true;
+    }
+
+    //consumer side, peek at the oldest event then poll() it
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    /**
+     * method for the time of the oldest event
+     *
+     * @return nanoTime, Long.MAX_VALUE if empty
+     */
+    public long peekTime() {
+        long h = head.get();
+        return h == tail.get() ? Long.MAX_VALUE : times[(int) h & mask];
+    }
+
+    public Action peekAction() {
+        return ACTIONS[codes[(int) head.get() & mask] >>> 1];
+    }
+
+    public boolean peekPressed() {
+        return (codes[(int) head.get() & mask] & 1) != 0;
+    }
+
+    /**
+     * method for removing the oldest event (consumer thread only)
+     */
+    public void poll() {
+        long h = head.get();
+        if (h != tail.get()) {
+            head.lazySet(h + 1); //the producer can reuse the slot after this
+        }
+    }
+
+    /**
+     * method for throwing away every event (consumer thread only)
+     */
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,116 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * LatencyHistogram.java
+ * @author V. Aiden
+ *
+ * LatencyHistogram records times in nanoseconds with about 3% precision from 1ns to over a minute,
+ * it works like HdrHistogram: every power of two range is split into 32 equal buckets,
+ * so small times get small buckets and big times get big ones
+ *
+ * recording is a couple of bit operations and one array increment (no objects made),
+ * only one thread should record into it at a time (Histogram is the simple linear version)
+ */
+
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS; //buckets per power of two
+    private static final int MAX_BITS = 40; //about 18 minutes in ns, anything bigger goes in the last bucket
+
+    private final long[] counts = new long[(MAX_BITS - SUB_BITS + 2) * SUB_BUCKETS];
+    private long total = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    /**
+     * method for recording a time
+     *
+     * @param nanoseconds (negative counts as 0)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[Math.min(index(value), counts.length - 1)]++;
+        total++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    //values under 64 get their own bucket, after that each power of two has 32
+    private static int index(long value) {
+        int exponent = 63 - Long.numberOfLeadingZeros(value | SUB_BUCKETS); //at least SUB_BITS
+        int shift = exponent - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    //biggest value that lands in the same bucket
+    private static long highestInBucket(int index) {
+        int shift = Math.max(0, (index >> SUB_BITS) - 1);
+        long sub = index - ((long) shift << SUB_BITS);
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * method for adding another histogram's counts into this one
+     *
+     * @param other histogram
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * method for getting a percentile
+     *
+     * @param percentile (0-100)
+     * @return time that percentile of the values are at or below (within the bucket precision)
+     */
+    public long percentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestInBucket(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * method for emptying the histogram
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        total = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+}
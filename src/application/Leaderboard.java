@@ -0,0 +1,296 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Leaderboard.java
+ * @author V. Aiden
+ * 
+ * Leaderboard keeps every finished game in an append-only log file and the best N of them in memory
+ * 
+ * LOG FORMAT:
+ * every record is [int length][payload][int crc32 of the payload] and is written with one append,
+ * if the game crashes halfway through a write the broken record at the end fails its length or crc check
+ * and is cut off the next time the log is opened, so the records before it are never lost
+ * 
+ * the top N is a sorted set that is rebuilt from the log on startup, adding a score is O(log N)
+ * and reading the top scores never touches the disk
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+public class Leaderboard {
+    private static final int MAX_RECORD = 4096; //a bigger length means the log is broken
+
+    //best score first, ties go to whoever got it first
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        if (a.record.score != b.record.score) {
+            return Integer.compare(b.record.score, a.record.score);
+        }
+        if (a.record.timestamp != b.record.timestamp) {
+            return Long.compare(a.record.timestamp, b.record.timestamp);
+        }
+        return Long.compare(a.sequence, b.sequence);
+    };
+
+    //a record plus its position in the log so equal records stay separate in the set
+    private static class Entry {
+        final ScoreRecord record;
+        final long sequence;
+
+        Entry(ScoreRecord record, long sequence) {
+            this.record = record;
+            this.sequence = sequence;
+        }
+    }
+
+    private final Path file; //null for a leaderboard that only lives in memory
+    private final int capacity;
+    private final TreeSet<Entry> top = new TreeSet<>(ORDER);
+    private long sequence = 0; //amount of records in the log
+    private FileChannel log;
+
+    /**
+     * constructor for a leaderboard that isn't saved anywhere
+     *
+     * @param capacity (amount of scores kept)
+     */
+    public Leaderboard(int capacity) {
+        this.file = null;
+        this.capacity = capacity;
+    }
+
+    /**
+     * constructor for a leaderboard backed by a log file, reads the whole log to build the top scores
+     *
+     * @param log file (made if it doesn't exist)
+     * @param capacity (amount of scores kept)
+     * @throws IOException if the log can't be opened
+     */
+    public Leaderboard(Path file, int capacity) throws IOException {
+        this.file = file;
+        this.capacity = capacity;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        log = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long valid = replay();
+        if (valid < log.size()) { //cut off a record that was only half written
+            log.truncate(valid);
+            log.force(true);
+        }
+        log.position(valid);
+    }
+
+    //reads every record in the log, returns where the last good one ends
+    //(read into the heap instead of mapped, a live mapping would stop the constructor truncating the file on Windows)
+    private long replay() throws IOException {
+        long size = log.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Score log is too big: " + size + " bytes");
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) size);
+        while (data.hasRemaining()) {
+            if (log.read(data, data.position()) < 0) { //file got shorter while reading
+            	break;
+            }
+        }
+        data.flip();
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[MAX_RECORD];
+        while (data.hasRemaining()) {
+            int start = data.position();
+            try {
+                int length = data.getInt();
+                if (length <= 0 || length > MAX_RECORD || length + 4 > data.remaining()) {
+                    return start;
+                }
+                data.get(payload, 0, length);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != data.getInt()) {
+                    return start;
+                }
+                insert(decode(ByteBuffer.wrap(payload, 0, length)));
+            } catch (BufferUnderflowException | IllegalArgumentException e) { //record is cut off or garbage
+                return start;
+            }
+        }
+        return data.position();
+    }
+
+    /**
+     * method for adding a finished game, it is appended to the log before it shows up in the top scores
+     *
+     * @param record
+     * @return true if the record made the top scores
+     * @throws IOException if the log can't be written (the record is not added)
+     */
+    public boolean add(ScoreRecord record) throws IOException {
+        return addAll(Collections.singletonList(record))[0];
+    }
+
+    /**
+     * method for adding a batch of finished games with one write and one sync to disk
+     * (either all of them are added or none)
+     *
+     * @param records
+     * @return for every record true if it made the top scores
+     * @throws IOException if the log can't be written (nothing is added)
+     */
+    public synchronized boolean[] addAll(List<ScoreRecord> records) throws IOException {
+        if (log != null) {
+            ByteArrayOutputStream frames = new ByteArrayOutputStream(records.size() * 64);
+            DataOutputStream out = new DataOutputStream(frames);
+            CRC32 crc = new CRC32();
+            for (ScoreRecord record : records) {
+                byte[] payload = encode(record);
+                crc.reset();
+                crc.update(payload, 0, payload.length);
+                out.writeInt(payload.length);
+                out.write(payload);
+                out.writeInt((int) crc.getValue());
+            }
+            ByteBuffer frame = ByteBuffer.wrap(frames.toByteArray());
+            long start = log.position();
+            try {
+                while (frame.hasRemaining()) {
+                    log.write(frame);
+                }
+                log.force(false); //the records are on disk before anyone sees them
+            } catch (IOException e) { //don't leave half a record for the next add to write after
+                log.truncate(start);
+                log.position(start);
+                throw e;
+            }
+        }
+        boolean[] madeTop = new boolean[records.size()];
+        for (int i = 0; i < madeTop.length; i++) {
+            madeTop[i] = insert(records.get(i));
+        }
+        return madeTop;
+    }
+
+    //adds to the sorted top scores, drops the worst one if there are too many
+    private boolean insert(ScoreRecord record) {
+        Entry entry = new Entry(record, sequence++);
+        top.add(entry);
+        if (top.size() > capacity) {
+            return top.pollLast() != entry;
+        }
+        return true;
+    }
+
+    /**
+     * method for getting the top scores (best first)
+     *
+     * @return copy of the top scores
+     */
+    public synchronized List<ScoreRecord> getTop() {
+        List<ScoreRecord> list = new ArrayList<>(top.size());
+        for (Entry entry : top) {
+            list.add(entry.record);
+        }
+        return list;
+    }
+
+    /**
+     * method for the best score ever
+     *
+     * @return score, 0 if nobody has played
+     */
+    public synchronized int getHighScore() {
+        return top.isEmpty() ? 0 : top.first().record.score;
+    }
+
+    /**
+     * method for checking if a score would make the top scores
+     *
+     * @param score
+     * @return true if it would be added
+     */
+    public synchronized boolean qualifies(int score) {
+        return top.size() < capacity || score > top.last().record.score;
+    }
+
+    /**
+     * method for the amount of games ever added (not just the ones kept)
+     *
+     * @return records in the log
+     */
+    public synchronized long getRecordCount() {
+        return sequence;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * method for closing the log file
+     */
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    private static byte[] encode(ScoreRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, record.player);
+        out.writeInt(record.score);
+        out.writeInt(record.lines);
+        out.writeLong(record.duration);
+        out.writeLong(record.timestamp);
+        writeString(out, record.replayId);
+        if (bytes.size() > MAX_RECORD) {
+            throw new IOException("Score record is too big");
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ScoreRecord decode(ByteBuffer in) {
+        String player = readString(in);
+        int score = in.getInt();
+        int lines = in.getInt();
+        long duration = in.getLong();
+        long timestamp = in.getLong();
+        String replayId = readString(in);
+        return new ScoreRecord(player, score, lines, duration, timestamp, replayId);
+    }
+
+    //strings are [short length][UTF-8 bytes]
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("String is too long");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+}
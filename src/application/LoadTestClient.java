@@ -0,0 +1,280 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * LoadTestClient.java
+ * @author V. Aiden
+ *
+ * LoadTestClient opens lots of connections to a GameServer and plays random inputs on all of them,
+ * it reads and checks every message the server sends back and reports the traffic every few seconds
+ *
+ * everything runs on one thread with one selector (like the server loops), games that end are
+ * reconnected so the amount of sessions stays the same for the whole test
+ *
+ * usage: LoadTestClient [--host HOST] [--port N] [--sessions N] [--rate INPUTS_PER_SECOND]
+ *                       [--seconds N] [--connect-rate CONNECTIONS_PER_SECOND]
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import simpleIO.Console;
+
+public class LoadTestClient {
+    private static final int REPORT_SECONDS = 5;
+    private static final Action[] INPUTS = {Action.LEFT, Action.RIGHT, Action.ROTATE, Action.DOWN};
+
+    private final InetSocketAddress address;
+    private final int target; //sessions to keep open
+    private final long inputNanos; //time between inputs of one session
+    private final long connectNanos; //time between new connections
+    private final Selector selector;
+    private final SplittableRandom random = new SplittableRandom(1);
+    private final List<Client> clients = new ArrayList<>();
+    private final ByteBuffer input = ByteBuffer.allocate(1);
+
+    //totals
+    private long messages, bytes, states, rows, garbage, gamesOver, connectFailures, protocolErrors;
+    private int open = 0;
+
+    /**
+     * one connection
+     */
+    private static class Client {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(4096);
+        long nextInput;
+        boolean connected = false;
+
+        Client(SocketChannel channel, long nextInput) {
+            this.channel = channel;
+            this.nextInput = nextInput;
+        }
+    }
+
+    /**
+     * constructor for load test client
+     *
+     * @param server address
+     * @param amount of sessions
+     * @param inputs per second for each session
+     * @param connections opened per second
+     */
+    public LoadTestClient(InetSocketAddress address, int sessions, double rate, double connectRate) throws IOException {
+        this.address = address;
+        this.target = sessions;
+        this.inputNanos = (long) (1e9 / rate);
+        this.connectNanos = (long) (1e9 / connectRate);
+        selector = Selector.open();
+    }
+
+    /**
+     * method for running the test
+     *
+     * @param seconds to run for
+     */
+    public void run(int seconds) throws IOException {
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long nextConnect = start, nextReport = start + REPORT_SECONDS * 1_000_000_000L;
+        long lastMessages = 0, lastBytes = 0;
+
+        while (System.nanoTime() < end) {
+            selector.select(1);
+            long now = System.nanoTime();
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Client client = (Client) key.attachment();
+                if (!key.isValid()) {
+                	continue;
+                }
+                if (key.isConnectable()) {
+                    finishConnect(key, client);
+                } else if (key.isReadable()) {
+                    read(key, client);
+                }
+            }
+
+            //random inputs that are due
+            for (int i = 0; i < clients.size(); i++) {
+                Client client = clients.get(i);
+                if (client.connected && now >= client.nextInput) {
+                    send(client);
+                    client.nextInput += inputNanos;
+                }
+            }
+
+            //top up the sessions (new ones and ones whose game ended)
+            while (open < target && now >= nextConnect) {
+                connect(now);
+                nextConnect += connectNanos;
+            }
+            if (open >= target) {
+                nextConnect = now;
+            }
+
+            if (now >= nextReport) {
+                Console.print(String.format("%d sessions, %.0f msg/s, %.1f KB/s (%.0f bytes/s per session), %d games over, %d garbage lines, %d connect failures",
+                        open, (messages - lastMessages) / (double) REPORT_SECONDS, (bytes - lastBytes) / 1024.0 / REPORT_SECONDS,
+                        (bytes - lastBytes) / (double) REPORT_SECONDS / Math.max(1, open), gamesOver, garbage, connectFailures));
+                lastMessages = messages;
+                lastBytes = bytes;
+                nextReport += REPORT_SECONDS * 1_000_000_000L;
+            }
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        Console.print(String.format("Done: %d messages (%d states, %.1f rows each), %.1f MB in %.0f s, %d games over, %d protocol errors",
+                messages, states, states == 0 ? 0 : rows / (double) states, bytes / 1048576.0, elapsed, gamesOver, protocolErrors));
+        for (Client client : clients) {
+            client.channel.close();
+        }
+        selector.close();
+    }
+
+    private void connect(long now) {
+        try {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Client client = new Client(channel, now + random.nextLong(inputNanos));
+            channel.connect(address);
+            channel.register(selector, SelectionKey.OP_CONNECT, client);
+            clients.add(client);
+            open++;
+        } catch (IOException e) {
+            connectFailures++;
+        }
+    }
+
+    private void finishConnect(SelectionKey key, Client client) {
+        try {
+            client.channel.finishConnect();
+            client.connected = true;
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            connectFailures++;
+            drop(key, client);
+        }
+    }
+
+    private void send(Client client) {
+        Action action = random.nextInt(10) == 0 ? Action.HARD_DROP : INPUTS[random.nextInt(INPUTS.length)];
+        input.clear();
+        input.put((byte) action.ordinal());
+        input.flip();
+        try {
+            client.channel.write(input); //0 bytes if the socket is full, that input is just skipped
+        } catch (IOException e) {
+            client.connected = false; //the read side notices the close
+        }
+    }
+
+    private void read(SelectionKey key, Client client) {
+        int n;
+        try {
+            n = client.channel.read(client.in);
+        } catch (IOException e) {
+            n = -1;
+        }
+        if (n < 0) { //server closed it (game over)
+            drop(key, client);
+            return;
+        }
+        bytes += n;
+
+        //every complete message
+        ByteBuffer in = client.in;
+        in.flip();
+        while (in.remaining() >= Protocol.HEADER_BYTES) {
+            int type = in.get(in.position());
+            int length = in.get(in.position() + 1) & 0xFF;
+            if (in.remaining() < Protocol.HEADER_BYTES + length) {
+            	break; //rest of it hasn't arrived yet
+            }
+            in.position(in.position() + Protocol.HEADER_BYTES);
+            int next = in.position() + length;
+            check(type, length, in);
+            in.position(next);
+            messages++;
+        }
+        in.compact();
+    }
+
+    private void check(int type, int length, ByteBuffer in) { //counts a message and checks it is well formed
+        switch (type) {
+            case Protocol.STATE:
+                in.getInt();
+                int piece = in.getShort() & 0xFFFF;
+                in.get();
+                int count = in.get() & 0xFF;
+                if (length != 8 + count * Protocol.ROW_BYTES || count > Board.ROWS
+                        || piece != Protocol.NO_PIECE && (Protocol.pieceX(piece) >= Board.COLUMNS || Protocol.pieceY(piece) >= Board.ROWS)) {
+                    protocolErrors++;
+                }
+                states++;
+                rows += count;
+                break;
+            case Protocol.GARBAGE:
+                garbage += in.get();
+                break;
+            case Protocol.GAME_OVER:
+                gamesOver++;
+                break;
+            case Protocol.HELLO:
+            case Protocol.SCORE:
+            case Protocol.OPPONENT:
+                break;
+            default:
+                protocolErrors++;
+        }
+    }
+
+    private void drop(SelectionKey key, Client client) {
+        key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+        	//already gone
+        }
+        clients.remove(client);
+        open--;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = "localhost";
+        int port = Protocol.DEFAULT_PORT;
+        int sessions = 1000;
+        double rate = 5;
+        int seconds = 30;
+        double connectRate = 2000;
+
+        //read the options
+        Map<String, String> options = Options.parse(args, 0, "--host", "--port", "--sessions", "--rate", "--seconds",
+                "--connect-rate");
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String value = option.getValue();
+            switch (option.getKey()) { //unknown options were already rejected
+                case "--host": host = value; break;
+                case "--port": port = Integer.parseInt(value); break;
+                case "--sessions": sessions = Integer.parseInt(value); break;
+                case "--rate": rate = Double.parseDouble(value); break;
+                case "--seconds": seconds = Integer.parseInt(value); break;
+                case "--connect-rate": connectRate = Double.parseDouble(value); break;
+            }
+        }
+
+        new LoadTestClient(new InetSocketAddress(host, port), sessions, rate, connectRate).run(seconds);
+    }
+}
@@ -0,0 +1,208 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Metrics.java
+ * @author V. Aiden
+ *
+ * Metrics measures how the game runs on the machine it is on (frame times, tick times, GC pauses)
+ * so stutter reports can be checked against real numbers
+ *
+ * the probes are called from the game loop on the JavaFX thread, they only do array increments
+ * (no objects are made), GC pauses come in from the JVM on its own thread so that one histogram is locked
+ *
+ * the numbers can be shown on screen (F3) and are written every few seconds to data/metrics.prom
+ * in the Prometheus text format so they can be scraped or just read
+ */
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+public class Metrics {
+    private static final double NS_PER_MS = 1_000_000.0;
+    private static final double NS_PER_SECOND = 1_000_000_000.0;
+
+    //latency histograms (nanoseconds)
+    private final LatencyHistogram frameTime = new LatencyHistogram(); //time between frames
+    private final LatencyHistogram drawTime = new LatencyHistogram(); //drawAll
+    private final LatencyHistogram tickTime = new LatencyHistogram(); //one game tick (inputs + gravity)
+    private final LatencyHistogram lockTime = new LatencyHistogram(); //ticks that locked a piece (merge + clearLines)
+    private final LatencyHistogram inputLatency = new LatencyHistogram(); //key event until the frame showing it is drawn
+    private final LatencyHistogram gcPauses = new LatencyHistogram(); //filled by the GC listener thread
+
+    //counters
+    private long frames, ticks, drops, locks, lines;
+    private long lastFrame = 0; //0 = no frame yet
+    private final long startTime = System.nanoTime();
+    private boolean gcListening = false;
+
+    /**
+     * constructor for metrics, starts listening for GC pauses
+     */
+    public Metrics() {
+        listenForGc();
+    }
+
+    //the JVM tells every listener about each collection (with how long it took)
+    private void listenForGc() {
+        try {
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (!(gc instanceof NotificationEmitter)) {
+                	continue;
+                }
+                ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                    if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    	return;
+                    }
+                    GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+                            .from((CompositeData) notification.getUserData());
+                    if (!isPause(info)) {
+                    	return;
+                    }
+                    synchronized (gcPauses) {
+                        gcPauses.record((long) (info.getGcInfo().getDuration() * NS_PER_MS));
+                    }
+                }, null, null);
+                gcListening = true;
+            }
+        } catch (RuntimeException | LinkageError e) { //not every JVM has the com.sun management classes
+            gcListening = false;
+        }
+    }
+
+    //only stop-the-world pauses freeze the game, concurrent cycles (G1 Concurrent GC, CMS, ZGC/Shenandoah Cycles)
+    //run next to it and report how long the whole cycle took, which can be seconds
+    //(Shenandoah Pauses names its actions after the phase, like "Init Mark", so they can't be matched exactly)
+    private static boolean isPause(GarbageCollectionNotificationInfo info) {
+        String name = info.getGcName();
+        String action = info.getGcAction().toLowerCase(Locale.ROOT);
+        return !name.contains("Concurrent") && !name.endsWith("Cycles") && !action.contains("cycle") && !action.contains("concurrent");
+    }
+
+    /**
+     * probe for the start of a frame
+     *
+     * @param frame time (ns, from the AnimationTimer)
+     */
+    public void frame(long now) {
+        if (lastFrame != 0) {
+            frameTime.record(now - lastFrame);
+        }
+        lastFrame = now;
+        frames++;
+    }
+
+    /**
+     * probe for how long drawing a frame took
+     *
+     * @param nanoseconds
+     */
+    public void draw(long nanos) {
+        drawTime.record(nanos);
+    }
+
+    /**
+     * probe for how long an input took to show up on screen
+     *
+     * @param nanoseconds from the key event until the frame with it was drawn
+     */
+    public void input(long nanos) {
+        inputLatency.record(nanos);
+    }
+
+    /**
+     * probe for one game tick
+     *
+     * @param nanoseconds the tick took
+     * @param gravity drops in the tick
+     * @param tetrominos locked in the tick
+     * @param lines cleared in the tick
+     */
+    public void tick(long nanos, long dropped, long locked, long cleared) {
+        tickTime.record(nanos);
+        if (locked > 0) {
+            lockTime.record(nanos);
+        }
+        ticks++;
+        drops += dropped;
+        locks += locked;
+        lines += cleared;
+    }
+
+    /**
+     * method for the text of the on-screen overlay
+     *
+     * @return a few lines of numbers
+     */
+    public String overlay() {
+        double seconds = (System.nanoTime() - startTime) / NS_PER_SECOND;
+        StringBuilder text = new StringBuilder(256);
+        text.append(String.format(Locale.ROOT, "FPS %.0f  frames %d%n", frameTime.getMean() > 0 ? NS_PER_SECOND / frameTime.getMean() : 0, frames));
+        text.append(times("frame", frameTime)).append('\n');
+        text.append(times("draw ", drawTime)).append('\n');
+        text.append(times("tick ", tickTime)).append('\n');
+        text.append(times("lock ", lockTime)).append('\n');
+        text.append(times("input", inputLatency)).append('\n');
+        synchronized (gcPauses) {
+            text.append(gcListening ? times("gc   ", gcPauses) + "  n " + gcPauses.getCount() : "gc   n/a").append('\n');
+        }
+        text.append(String.format(Locale.ROOT, "drops %d  locks %d  lines %d  up %.0fs", drops, locks, lines, seconds));
+        return text.toString();
+    }
+
+    private static String times(String name, LatencyHistogram h) {
+        return String.format(Locale.ROOT, "%s p50 %.2f  p99 %.2f  max %.2f ms", name,
+                h.percentile(50) / NS_PER_MS, h.percentile(99) / NS_PER_MS, h.getMax() / NS_PER_MS);
+    }
+
+    /**
+     * method for every metric in the Prometheus text format
+     *
+     * @return text
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(2048);
+        counter(out, "tetris_frames_total", "Frames drawn", frames);
+        counter(out, "tetris_ticks_total", "Game ticks simulated", ticks);
+        counter(out, "tetris_drops_total", "Gravity drops", drops);
+        counter(out, "tetris_locks_total", "Tetrominos locked", locks);
+        counter(out, "tetris_lines_total", "Lines cleared", lines);
+        summary(out, "tetris_frame_time_seconds", "Time between frames", frameTime);
+        summary(out, "tetris_draw_time_seconds", "Time to draw a frame", drawTime);
+        summary(out, "tetris_tick_time_seconds", "Time to simulate a tick", tickTime);
+        summary(out, "tetris_lock_time_seconds", "Time of ticks that locked a tetromino", lockTime);
+        summary(out, "tetris_input_latency_seconds", "Time from a key event until the frame showing it is drawn", inputLatency);
+        if (gcListening) {
+            synchronized (gcPauses) {
+                summary(out, "tetris_gc_pause_seconds", "Garbage collection pauses", gcPauses);
+            }
+        }
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String help, LatencyHistogram h) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" summary\n");
+        for (double q : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            out.append(name).append("{quantile=\"").append(q).append("\"} ")
+                    .append(seconds(h.percentile(q * 100))).append('\n');
+        }
+        out.append(name).append("_sum ").append(seconds(h.getSum())).append('\n');
+        out.append(name).append("_count ").append(h.getCount()).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / NS_PER_SECOND);
+    }
+}
@@ -0,0 +1,214 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * MoveGenerator.java
+ * @author V. Aiden
+ * 
+ * MoveGenerator finds every place a tetromino can lock on a board
+ * it does a breadth first search over every (rotation, x, y) the piece can reach with
+ * LEFT, RIGHT, DOWN and ROTATE (using the real canMove and rotate rules, wall kicks included),
+ * a reachable pose that can't move down any more is a placement
+ * 
+ * the pivot block is always on the board so there are only 4 * 20 * 10 = 800 poses,
+ * visited poses are tracked in a bitset and all the arrays are reused so a search allocates nothing
+ */
+
+import java.util.Arrays;
+
+public class MoveGenerator {
+	//constants
+    public static final int POSES = 4 * Board.ROWS * Board.COLUMNS;
+    private static final Action[] MOVES = {Action.LEFT, Action.RIGHT, Action.DOWN, Action.ROTATE};
+
+    //search arrays (indexed by pose)
+    private final long[] visited = new long[(POSES + 63) / 64];
+    private final int[] queue = new int[POSES];
+    private final int[] parent = new int[POSES]; //pose it was reached from
+    private final byte[] via = new byte[POSES]; //index in MOVES used to reach it
+
+    //results
+    private final int[] placements = new int[POSES];
+    private int placementCount = 0;
+    private int nodes = 0; //poses visited by the last search
+
+    //dedupe placements that cover the same cells (open addressing hash set)
+    private final long[] keys = new long[2048];
+    private final int[] keyStamps = new int[keys.length];
+    private int stamp = 0;
+
+    private final Tetromino piece = new Tetromino(0);
+
+    /**
+     * method for packing a pose into an index
+     *
+     * @param rotation
+     * @param pivot x
+     * @param pivot y
+     * @return pose index
+     */
+    public static int pose(int rotation, int x, int y) {
+        return (rotation * Board.ROWS + y) * Board.COLUMNS + x;
+    }
+
+    public static int poseRotation(int pose) {
+        return pose / (Board.ROWS * Board.COLUMNS);
+    }
+
+    public static int poseX(int pose) {
+        return pose % Board.COLUMNS;
+    }
+
+    public static int poseY(int pose) {
+        return (pose / Board.COLUMNS) % Board.ROWS;
+    }
+
+    /**
+     * method for finding every placement of a tetromino
+     *
+     * @param board (game board)
+     * @param tetromino type
+     * @param start rotation
+     * @param start pivot x
+     * @param start pivot y
+     * @return amount of placements found
+     */
+    public int generate(Board board, int type, int rotation, int x, int y) {
+        Arrays.fill(visited, 0);
+        placementCount = 0;
+        nodes = 0;
+        if (++stamp == 0) { //stamp wrapped around -> forget all old keys
+            Arrays.fill(keyStamps, 0);
+            stamp = 1;
+        }
+
+        piece.type = type;
+        if (!piece.fits(board, rotation, x, y)) { //doesn't even fit where it starts
+        	return 0;
+        }
+
+        int start = pose(rotation, x, y);
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        mark(start);
+        parent[start] = -1;
+
+        while (head < tail) {
+            int current = queue[head++];
+            nodes++;
+            int r = poseRotation(current);
+            int px = poseX(current);
+            int py = poseY(current);
+
+            //try every move from this pose
+            for (int m = 0; m < MOVES.length; m++) {
+                int next = -1;
+                switch (MOVES[m]) {
+                    case LEFT:
+                        if (piece.fits(board, r, px - 1, py)) {
+                        	next = current - 1;
+                        }
+                        break;
+                    case RIGHT:
+                        if (piece.fits(board, r, px + 1, py)) {
+                        	next = current + 1;
+                        }
+                        break;
+                    case DOWN:
+                        if (piece.fits(board, r, px, py + 1)) {
+                        	next = current + Board.COLUMNS;
+                        }
+                        break;
+                    default:
+                    	//rotate with the same wall kicks as the game
+                        piece.setPose(r, px, py);
+                        piece.rotate(board);
+                        next = pose(piece.getRotation(), piece.getX(), piece.getY());
+                        break;
+                }
+                if (next >= 0 && !isMarked(next)) {
+                    mark(next);
+                    parent[next] = current;
+                    via[next] = (byte) m;
+                    queue[tail++] = next;
+                }
+            }
+
+            //can't go down -> it would lock here
+            if (!piece.fits(board, r, px, py + 1)) {
+                piece.setPose(r, px, py);
+                if (addKey(piece.placementKey())) {
+                    placements[placementCount++] = current;
+                }
+            }
+        }
+        return placementCount;
+    }
+
+    private void mark(int pose) {
+        visited[pose >>> 6] |= 1L << pose;
+    }
+
+    private boolean isMarked(int pose) {
+        return (visited[pose >>> 6] & (1L << pose)) != 0;
+    }
+
+    private boolean addKey(long key) { //true if the key wasn't in the set yet
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 53); //top 11 bits -> 0-2047
+        while (keyStamps[slot] == stamp) {
+            if (keys[slot] == key) {
+            	return false;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keyStamps[slot] = stamp;
+        keys[slot] = key;
+        return true;
+    }
+
+    /**
+     * method for getting a placement from the last search
+     *
+     * @param index (0 to placement count - 1)
+     * @return pose index
+     */
+    public int getPlacement(int index) {
+        return placements[index];
+    }
+
+    public int getPlacementCount() {
+        return placementCount;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    /**
+     * method for checking if a pose was reached in the last search
+     *
+     * @param pose index
+     * @return true or false
+     */
+    public boolean isReachable(int pose) {
+        return isMarked(pose);
+    }
+
+    /**
+     * method for getting the inputs that move the piece from the start pose to a reachable pose
+     *
+     * @param pose index (must be reachable)
+     * @param array to fill with the actions (POSES long is always enough)
+     * @return amount of actions
+     */
+    public int path(int pose, Action[] out) {
+        int length = 0;
+        for (int p = pose; parent[p] >= 0; p = parent[p]) {
+            length++;
+        }
+        int i = length;
+        for (int p = pose; parent[p] >= 0; p = parent[p]) {
+            out[--i] = MOVES[via[p]];
+        }
+        return length;
+    }
+}
@@ -0,0 +1,61 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Options.java
+ * @author V. Aiden
+ *
+ * Options reads the command line options of the tools ("--name value", flags like "--suite" have no value)
+ * so every main checks for unknown options and missing values the same way
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class Options {
+    private Options() {
+    }
+
+    /**
+     * method for reading options that all take a value
+     *
+     * @param command line
+     * @param index of the first option (arguments before it are positional)
+     * @param names of the options that are allowed
+     * @return value of every option given, in the order they were given (flags map to "true")
+     * @throws IllegalArgumentException for an unknown option or one without a value
+     */
+    static Map<String, String> parse(String[] args, int from, String... names) {
+        return parse(args, from, Collections.<String>emptyList(), names);
+    }
+
+    /**
+     * method for reading options where some are flags without a value
+     *
+     * @param command line
+     * @param index of the first option (arguments before it are positional)
+     * @param flags (options without a value)
+     * @param names of the options that take a value
+     * @return value of every option given, in the order they were given (flags map to "true")
+     * @throws IllegalArgumentException for an unknown option or one without a value
+     */
+    static Map<String, String> parse(String[] args, int from, List<String> flags, String... names) {
+        List<String> valued = Arrays.asList(names);
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = from; i < args.length; i++) {
+            String name = args[i];
+            if (flags.contains(name)) {
+                options.put(name, "true");
+            } else if (!valued.contains(name)) {
+                throw new IllegalArgumentException("Unknown option: " + name);
+            } else if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for option: " + name);
+            } else {
+                options.put(name, args[++i]);
+            }
+        }
+        return options;
+    }
+}
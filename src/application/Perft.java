@@ -0,0 +1,268 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Perft.java
+ * @author V. Aiden
+ *
+ * Perft counts every distinct place a sequence of tetrominos can lock, like perft in chess engines
+ *
+ * for the first piece every placement is found with the MoveGenerator (the real canMove, move and
+ * rotate with wall kicks, visited poses kept in its bitset, placements that cover the same cells
+ * counted once), each one is locked (lines cleared) and the next piece is counted on that board,
+ * the count at depth N is the amount of different lock sequences of N pieces
+ *
+ * the counts only change if the movement rules change, so the built-in suite is a regression test
+ * for the engine, and nodes per second (poses searched) is a benchmark for it
+ *
+ * the subtrees of the first placements are fork-join tasks so it uses every core
+ *
+ * usage: Perft [--board ROWS] [--pieces LETTERS] [--depth N] [--expect COUNT] [--threads N]
+ *        Perft --suite [--threads N]
+ * ROWS are rows from the top down to the floor split by '/', '#' is a block and '.' is empty
+ * (e.g. "#....#####/##.#######"), LETTERS are tetrominos like "TIOLJSZ"
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import simpleIO.Console;
+
+public class Perft {
+    private static final String TYPES = "OISZTJL"; //letter of each tetromino type
+    private static final int SPLIT_DEPTH = 3; //subtrees at least this deep become their own task
+
+    //board, pieces, depth, count (worked out with the engine these were written for)
+    private static final String[][] SUITE = {
+        {"", "T", "1", "34"},
+        {"", "TI", "2", "596"},
+        {"", "TIO", "3", "5542"},
+        {"", "LJSZ", "4", "390859"},
+        {"#########./#########./#########./#########.", "IIT", "3", "10094"},
+        {"#...######/##.#######/###.######", "TTS", "3", "21415"},
+        {"#.########/####.#####/###.######", "ZSO", "3", "2720"},
+    };
+
+    /**
+     * counts of a run
+     */
+    public static class Result {
+        public final long count; //lock sequences at the last depth
+        public final long nodes; //poses searched by every move generation
+        public final long nanos;
+
+        Result(long count, long nodes, long nanos) {
+            this.count = count;
+            this.nodes = nodes;
+            this.nanos = nanos;
+        }
+
+        public double nodesPerSecond() {
+            return nodes / (nanos / 1e9);
+        }
+    }
+
+    /**
+     * fork-join task that counts one board's subtree
+     */
+    private static class CountTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+        private final Board board;
+        private final int[] pieces;
+        private final int index; //piece to place on this board
+
+        CountTask(Board board, int[] pieces, int index) {
+            this.board = board;
+            this.pieces = pieces;
+            this.index = index;
+        }
+
+        @Override
+        protected long[] compute() {
+            int depth = pieces.length - index;
+            if (depth < SPLIT_DEPTH) { //small -> count it right here
+                long[] nodes = new long[1];
+                long count = count(board, pieces, index, new MoveGenerator[depth], new Board[depth], nodes);
+                return new long[] {count, nodes[0]};
+            }
+
+            //one task for every placement
+            MoveGenerator generator = new MoveGenerator();
+            int type = pieces[index];
+            int placements = generator.generate(board, type, 0, Tetromino.spawnX(type), Tetromino.spawnY(type));
+            List<CountTask> tasks = new ArrayList<>(placements);
+            for (int i = 0; i < placements; i++) {
+                Board child = new Board(board);
+                lock(child, type, generator.getPlacement(i));
+                tasks.add(new CountTask(child, pieces, index + 1));
+            }
+            long[] total = {0, generator.getNodes()};
+            for (CountTask task : invokeAll(tasks)) {
+                long[] result = task.join();
+                total[0] += result[0];
+                total[1] += result[1];
+            }
+            return total;
+        }
+    }
+
+    //counts on one thread, generators and boards are reused at each level
+    private static long count(Board board, int[] pieces, int index, MoveGenerator[] generators, Board[] boards, long[] nodes) {
+        int level = pieces.length - index - 1;
+        if (generators[level] == null) {
+            generators[level] = new MoveGenerator();
+            boards[level] = new Board();
+        }
+        MoveGenerator generator = generators[level];
+        int type = pieces[index];
+        int placements = generator.generate(board, type, 0, Tetromino.spawnX(type), Tetromino.spawnY(type));
+        nodes[0] += generator.getNodes();
+        if (level == 0) { //last piece -> every placement is one sequence (no need to lock them)
+        	return placements;
+        }
+
+        long count = 0;
+        Board child = boards[level];
+        for (int i = 0; i < placements; i++) {
+            child.copyFrom(board);
+            lock(child, type, generator.getPlacement(i));
+            count += count(child, pieces, index + 1, generators, boards, nodes);
+        }
+        return count;
+    }
+
+    private static void lock(Board board, int type, int pose) {
+        Tetromino piece = new Tetromino(type);
+        piece.setPose(MoveGenerator.poseRotation(pose), MoveGenerator.poseX(pose), MoveGenerator.poseY(pose));
+        piece.merge(board);
+        board.clearLines(piece.getTopRow(), piece.getBottomRow());
+    }
+
+    /**
+     * method for counting every lock sequence
+     *
+     * @param board to start on
+     * @param tetromino types in order (depth = length)
+     * @param pool to count on
+     * @return counts
+     */
+    public static Result perft(Board board, int[] pieces, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        long[] result = pieces.length == 0 ? new long[] {1, 0} : pool.invoke(new CountTask(new Board(board), pieces, 0));
+        return new Result(result[0], result[1], System.nanoTime() - start);
+    }
+
+    /**
+     * method for making a board from rows like "#....#####/##.#######" (top row first, last row on the floor)
+     *
+     * @param rows
+     * @return board
+     */
+    public static Board parseBoard(String rows) {
+        Board board = new Board();
+        if (rows.isEmpty()) {
+        	return board;
+        }
+        String[] lines = rows.split("/");
+        if (lines.length > Board.ROWS) {
+            throw new IllegalArgumentException("Board has " + lines.length + " rows, at most " + Board.ROWS);
+        }
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.length() != Board.COLUMNS) {
+                throw new IllegalArgumentException("Row \"" + line + "\" is not " + Board.COLUMNS + " columns");
+            }
+            int y = Board.ROWS - lines.length + i;
+            for (int x = 0; x < Board.COLUMNS; x++) {
+                if (line.charAt(x) == '#') {
+                    board.setCell(x, y, GameEngine.GARBAGE_COLOR);
+                } else if (line.charAt(x) != '.') {
+                    throw new IllegalArgumentException("Unknown cell '" + line.charAt(x) + "' in row \"" + line + "\"");
+                }
+            }
+        }
+        return board;
+    }
+
+    /**
+     * method for reading tetromino letters
+     *
+     * @param letters like "TIO"
+     * @return types
+     */
+    public static int[] parsePieces(String letters) {
+        int[] pieces = new int[letters.length()];
+        for (int i = 0; i < pieces.length; i++) {
+            pieces[i] = TYPES.indexOf(Character.toUpperCase(letters.charAt(i)));
+            if (pieces[i] < 0) {
+                throw new IllegalArgumentException("Unknown tetromino '" + letters.charAt(i) + "'");
+            }
+        }
+        return pieces;
+    }
+
+    private static String describe(String board, String pieces) {
+        return (board.isEmpty() ? "empty board" : board) + " " + pieces;
+    }
+
+    public static void main(String[] args) {
+        String board = "";
+        String pieces = "TIO";
+        int depth = -1; //-1 = every piece
+        long expect = -1;
+        boolean suite = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        //read the options
+        Map<String, String> options = Options.parse(args, 0, Arrays.asList("--suite"), "--board", "--pieces", "--depth",
+                "--expect", "--threads");
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String value = option.getValue();
+            switch (option.getKey()) { //unknown options were already rejected
+                case "--suite": suite = true; break;
+                case "--board": board = value; break;
+                case "--pieces": pieces = value; break;
+                case "--depth": depth = Integer.parseInt(value); break;
+                case "--expect": expect = Long.parseLong(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        boolean failed = false;
+        if (suite) {
+            long nodes = 0, nanos = 0;
+            for (String[] test : SUITE) {
+                int[] types = parsePieces(test[1]);
+                Result result = perft(parseBoard(test[0]), Arrays.copyOf(types, Integer.parseInt(test[2])), pool);
+                boolean ok = result.count == Long.parseLong(test[3]);
+                failed |= !ok;
+                nodes += result.nodes;
+                nanos += result.nanos;
+                Console.print(String.format("%-50s depth %s: %10d %s (%.0f nodes/s)", describe(test[0], test[1]), test[2],
+                        result.count, ok ? "OK" : "FAILED, expected " + test[3], result.nodesPerSecond()));
+            }
+            Console.print(String.format("Suite %s: %d nodes in %.2f s, %.0f nodes/s on %d threads",
+                    failed ? "FAILED" : "passed", nodes, nanos / 1e9, nodes / (nanos / 1e9), threads));
+        } else {
+            int[] types = parsePieces(pieces);
+            if (depth >= 0) {
+                types = Arrays.copyOf(types, Math.min(depth, types.length));
+            }
+            Result result = perft(parseBoard(board), types, pool);
+            Console.print(String.format("%s depth %d: %d (%d nodes in %.2f s, %.0f nodes/s on %d threads)", describe(board, pieces),
+                    types.length, result.count, result.nodes, result.nanos / 1e9, result.nodesPerSecond(), threads));
+            if (expect >= 0 && result.count != expect) {
+                Console.print("FAILED, expected " + expect);
+                failed = true;
+            }
+        }
+        pool.shutdown();
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * PersistenceService.java
+ * @author V. Aiden
+ *
+ * PersistenceService does all the saving and loading on one background writer thread so a slow disk
+ * never freezes the game (the JavaFX thread only puts jobs in a queue)
+ *
+ * HOW IT WORKS:
+ * the writer takes everything that is waiting in the queue at once and handles it as one batch,
+ * all the scores in a batch are added to the leaderboard with one write and one sync,
+ * replays with the same id (and text files with the same path) are only written once (the newest one wins),
+ * files are written to a temp file and renamed so they are either all there or not there
+ *
+ * when a job is done its callback is handed to the callback executor (Platform::runLater in the game)
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import simpleIO.Console;
+
+public class PersistenceService {
+    private static final int MAX_BATCH = 256; //most jobs handled in one go
+
+    private abstract static class Job {
+    }
+
+    private static class ScoreJob extends Job {
+        final ScoreRecord record;
+        final Consumer<Boolean> done;
+
+        ScoreJob(ScoreRecord record, Consumer<Boolean> done) {
+            this.record = record;
+            this.done = done;
+        }
+    }
+
+    private static class ReplayJob extends Job {
+        final Replay replay;
+        final String id;
+        final Consumer<Boolean> done;
+
+        ReplayJob(Replay replay, String id, Consumer<Boolean> done) {
+            this.replay = replay;
+            this.id = id;
+            this.done = done;
+        }
+    }
+
+    private static class FileJob extends Job {
+        final Path path;
+        final byte[] data;
+        final Consumer<Boolean> done;
+
+        FileJob(Path path, byte[] data, Consumer<Boolean> done) {
+            this.path = path;
+            this.data = data;
+            this.done = done;
+        }
+    }
+
+    //anything else (loading), runs after every job queued before it
+    private static class TaskJob extends Job {
+        final Runnable task;
+
+        TaskJob(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    private static final Job STOP = new Job() {
+    };
+
+    private final BlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private final Executor callbacks;
+    private final Thread writer;
+    private volatile boolean stopped = false;
+
+    //batch in progress (only used by the writer thread)
+    private final List<Job> batch = new ArrayList<>();
+    private final List<ScoreJob> scores = new ArrayList<>();
+    private final Map<String, List<ReplayJob>> replays = new LinkedHashMap<>();
+    private final Map<Path, List<FileJob>> files = new LinkedHashMap<>();
+
+    /**
+     * constructor for persistence service, starts the writer thread
+     *
+     * @param executor the callbacks are run on (Platform::runLater for the JavaFX thread)
+     */
+    public PersistenceService(Executor callbacks) {
+        this.callbacks = callbacks;
+        writer = new Thread(this::run, "persistence-writer");
+        writer.setDaemon(true); //shutdown() is what makes sure everything is written
+        writer.start();
+    }
+
+    /**
+     * method for adding a finished game to the leaderboard
+     *
+     * @param record
+     * @param callback (true if it made the top scores, false if it didn't or couldn't be saved), can be null
+     */
+    public void saveScore(ScoreRecord record, Consumer<Boolean> done) {
+        submit(new ScoreJob(record, done));
+    }
+
+    /**
+     * method for saving a replay file
+     *
+     * @param replay
+     * @param id (file name without the extension)
+     * @param callback (true if it was saved), can be null
+     */
+    public void saveReplay(Replay replay, String id, Consumer<Boolean> done) {
+        submit(new ReplayJob(replay, id, done));
+    }
+
+    /**
+     * method for replacing a text file (metrics, exports)
+     *
+     * @param path
+     * @param text
+     * @param callback (true if it was saved), can be null
+     */
+    public void saveText(Path path, String text, Consumer<Boolean> done) {
+        submit(new FileJob(path, text.getBytes(StandardCharsets.UTF_8), done));
+    }
+
+    /**
+     * method for loading something on the writer thread
+     *
+     * @param loader (runs on the writer thread)
+     * @param callback with the loaded value (null if loading failed)
+     */
+    public <T> void load(Callable<T> loader, Consumer<T> done) {
+        submit(new TaskJob(() -> {
+            T value = null;
+            try {
+                value = loader.call();
+            } catch (Exception e) {
+                Console.print("Problems loading: " + e.getMessage());
+            }
+            finish(done, value);
+        }));
+    }
+
+    private synchronized void submit(Job job) { //synchronized with shutdown() so nothing lands after STOP
+        if (stopped) {
+            throw new IllegalStateException("Persistence service is shut down");
+        }
+        queue.add(job);
+    }
+
+    /**
+     * method for writing everything that is still queued and stopping the writer thread
+     *
+     * @param longest time to wait (ms)
+     * @return true if everything was written in time
+     */
+    public boolean shutdown(long timeout) {
+        synchronized (this) {
+            if (!stopped) {
+                stopped = true;
+                queue.add(STOP);
+            }
+        }
+        try {
+            writer.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !writer.isAlive();
+    }
+
+    private void run() {
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take()); //wait for work
+            } catch (InterruptedException e) {
+                continue; //only shutdown() stops the writer
+            }
+            queue.drainTo(batch, MAX_BATCH - 1); //everything else that is already waiting
+
+            for (Job job : batch) {
+                if (job == STOP) {
+                    running = false;
+                } else if (job instanceof ScoreJob) {
+                    scores.add((ScoreJob) job);
+                } else if (job instanceof ReplayJob) {
+                    ReplayJob replay = (ReplayJob) job;
+                    replays.computeIfAbsent(replay.id, k -> new ArrayList<>()).add(replay);
+                } else if (job instanceof FileJob) {
+                    FileJob file = (FileJob) job;
+                    files.computeIfAbsent(file.path, k -> new ArrayList<>()).add(file);
+                } else { //tasks have to see the jobs before them
+                    flush();
+                    try {
+                        ((TaskJob) job).task.run();
+                    } catch (RuntimeException e) { //one bad task can't be allowed to kill the writer
+                        Console.print("Problems running a persistence task: " + e);
+                    }
+                }
+            }
+            flush();
+            batch.clear();
+        }
+    }
+
+    //writes the pending scores and replays
+    private void flush() {
+        for (List<ReplayJob> jobs : replays.values()) {
+            ReplayJob newest = jobs.get(jobs.size() - 1); //older versions of the same replay are skipped
+            boolean saved = write(newest.id, () -> ReplayHandler.saveReplay(newest.replay, newest.id));
+            for (ReplayJob job : jobs) {
+                finish(job.done, saved);
+            }
+        }
+        replays.clear();
+
+        for (List<FileJob> jobs : files.values()) {
+            FileJob newest = jobs.get(jobs.size() - 1);
+            boolean saved = write(newest.path.toString(), () -> writeFile(newest.path, newest.data));
+            for (FileJob job : jobs) {
+                finish(job.done, saved);
+            }
+        }
+        files.clear();
+
+        if (!scores.isEmpty()) {
+            List<ScoreRecord> records = new ArrayList<>(scores.size());
+            for (ScoreJob job : scores) {
+                records.add(job.record);
+            }
+            boolean[] madeTop;
+            try {
+                madeTop = HighScoreHandler.saveScores(records);
+            } catch (RuntimeException e) {
+                Console.print("Error saving scores: " + e);
+                madeTop = new boolean[records.size()]; //none of them were saved
+            }
+            for (int i = 0; i < scores.size(); i++) {
+                finish(scores.get(i).done, madeTop[i]);
+            }
+            scores.clear();
+        }
+    }
+
+    //runs a write, anything unexpected it throws counts as not saved (and the writer keeps going)
+    private static boolean write(String what, BooleanSupplier writer) {
+        try {
+            return writer.getAsBoolean();
+        } catch (RuntimeException e) {
+            Console.print("Error writing " + what + ": " + e);
+            return false;
+        }
+    }
+
+    //temp file + rename like the replays
+    private static boolean writeFile(Path path, byte[] data) {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.write(temp, data);
+            ReplayHandler.commit(temp, path);
+            return true;
+        } catch (IOException e) {
+            Console.print("Error writing " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private <T> void finish(Consumer<T> done, T value) {
+        if (done != null) {
+            try {
+                callbacks.execute(() -> done.accept(value));
+            } catch (RuntimeException e) { //e.g. Platform.runLater once JavaFX is exiting
+                Console.print("Problems handing back a persistence callback: " + e);
+            }
+        }
+    }
+
+    /**
+     * method for the amount of jobs waiting to be written
+     *
+     * @return queue size
+     */
+    public int getPending() {
+        return queue.size();
+    }
+}
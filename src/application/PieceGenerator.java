@@ -0,0 +1,49 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * PieceGenerator.java
+ * @author V. Aiden
+ * 
+ * PieceGenerator decides which tetromino comes next
+ * there are 2 modes:
+ * UNIFORM - every piece is random (the original game)
+ * BAG     - the 7 pieces are shuffled into a bag and dealt out, then a new bag is shuffled
+ *           (no droughts, you always see every piece within 13 pieces)
+ */
+
+public interface PieceGenerator {
+    enum Mode {
+        UNIFORM,
+        BAG
+    }
+
+    /**
+     * method for getting the next tetromino type
+     *
+     * @return type (0-6)
+     */
+    int next();
+
+    /**
+     * method for making a copy that will deal the exact same pieces from here on
+     *
+     * @return copy
+     */
+    PieceGenerator copy();
+
+    /**
+     * method for making a generator
+     *
+     * @param mode
+     * @param seed
+     * @return generator
+     */
+    static PieceGenerator create(Mode mode, long seed) {
+        switch (mode) {
+            case BAG:
+                return new BagGenerator(seed);
+            default:
+                return new UniformGenerator(seed);
+        }
+    }
+}
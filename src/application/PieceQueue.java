@@ -0,0 +1,98 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * PieceQueue.java
+ * @author V. Aiden
+ * 
+ * PieceQueue is the queue of upcoming tetromino types,
+ * it is a ring buffer of ints so adding and removing never boxes an Integer or makes a list node
+ */
+
+public class PieceQueue {
+    private final int[] types;
+    private final int mask; //capacity is a power of 2 so wrapping around is an AND
+    private int head = 0; //index of the first type
+    private int size = 0;
+
+    /**
+     * constructor for piece queue
+     *
+     * @param minimum capacity
+     */
+    public PieceQueue(int capacity) {
+        int length = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        types = new int[length];
+        mask = length - 1;
+    }
+
+    /**
+     * constructor for a copy of another queue
+     *
+     * @param queue to copy
+     */
+    public PieceQueue(PieceQueue other) {
+        types = other.types.clone();
+        mask = other.mask;
+        head = other.head;
+        size = other.size;
+    }
+
+    /**
+     * method for adding a type at the end of the queue
+     *
+     * @param type
+     */
+    public void add(int type) {
+        if (size == types.length) {
+            throw new IllegalStateException("Piece queue is full");
+        }
+        types[(head + size) & mask] = type;
+        size++;
+    }
+
+    /**
+     * method for removing the first type
+     *
+     * @return type
+     */
+    public int poll() {
+        if (size == 0) {
+            throw new IllegalStateException("Piece queue is empty");
+        }
+        int type = types[head];
+        head = (head + 1) & mask;
+        size--;
+        return type;
+    }
+
+    /**
+     * method for looking at the first type without removing it
+     *
+     * @return type
+     */
+    public int peek() {
+        return peek(0);
+    }
+
+    /**
+     * method for looking at any type in the queue
+     *
+     * @param index (0 is the next one)
+     * @return type
+     */
+    public int peek(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return types[(head + index) & mask];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
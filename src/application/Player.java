@@ -0,0 +1,20 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Player.java
+ * @author V. Aiden
+ * 
+ * Player is anything that can play a headless game (random inputs, AI bots, ...)
+ * the game driver keeps asking for actions until the player returns null or runs out of time,
+ * then gravity drops the piece one row
+ */
+
+public interface Player {
+    /**
+     * method for choosing the next input
+     *
+     * @param engine (current game)
+     * @return the action to do, or null to wait for the next gravity drop
+     */
+    Action nextAction(GameEngine engine);
+}
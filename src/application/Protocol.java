@@ -0,0 +1,116 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Protocol.java
+ * @author V. Aiden
+ *
+ * Protocol is the binary format the GameServer and its clients talk in
+ *
+ * CLIENT -> SERVER:
+ * one byte per input, the Action ordinal (applied on the server's next tick), or QUIT
+ *
+ * SERVER -> CLIENT:
+ * every message is [byte type][byte payload length][payload], numbers are big endian
+ * HELLO     int session id, long seed
+ * STATE     int tick, short piece, byte hold + next, byte row count, then per row: byte y, int colors
+ *           (only the rows that changed since the last STATE the client got, the first one has all of them)
+ * SCORE     int score, int lines
+ * OPPONENT  int session id of the opponent (-1 = opponent left)
+ * GARBAGE   byte lines (sent by the opponent, already added to the board)
+ * GAME_OVER int score, int lines (the server closes the connection after it)
+ *
+ * the piece is packed in 14 bits: type (3) | rotation (2) | x (4) | y (5), with type 7 if there is none,
+ * hold + next is (hold type + 1) << 4 | next type, row colors are Board color rows (3 bits per cell)
+ */
+
+import java.nio.ByteBuffer;
+
+public final class Protocol {
+    public static final int DEFAULT_PORT = 7777;
+    public static final int QUIT = 0x7F;
+
+    //message types
+    public static final int HELLO = 1;
+    public static final int STATE = 2;
+    public static final int SCORE = 3;
+    public static final int OPPONENT = 4;
+    public static final int GARBAGE = 5;
+    public static final int GAME_OVER = 6;
+
+    public static final int HEADER_BYTES = 2;
+    public static final int ROW_BYTES = 5;
+    public static final int MAX_STATE_BYTES = HEADER_BYTES + 8 + Board.ROWS * ROW_BYTES; //every row changed
+    public static final int NO_PIECE = 7 << 11;
+
+    private Protocol() {
+    }
+
+    /**
+     * method for packing the falling tetromino
+     *
+     * @param tetromino (null for none)
+     * @return 14 bit piece
+     */
+    public static int packPiece(Tetromino piece) {
+        if (piece == null) {
+        	return NO_PIECE;
+        }
+        //masked so a piece that is off the board can't spill into the other fields
+        return (piece.type & 7) << 11 | (piece.getRotation() & 3) << 9 | (piece.getX() & 15) << 5 | (piece.getY() & 31);
+    }
+
+    public static int pieceType(int piece) {
+        return piece >>> 11;
+    }
+
+    public static int pieceRotation(int piece) {
+        return (piece >>> 9) & 3;
+    }
+
+    public static int pieceX(int piece) {
+        return (piece >>> 5) & 15;
+    }
+
+    public static int pieceY(int piece) {
+        return piece & 31;
+    }
+
+    /**
+     * method for starting a message, the length is filled in by end()
+     *
+     * @param buffer to write into
+     * @param message type
+     * @return position of the length byte
+     */
+    public static int begin(ByteBuffer out, int type) {
+        out.put((byte) type);
+        int at = out.position();
+        out.put((byte) 0);
+        return at;
+    }
+
+    /**
+     * method for finishing a message started with begin()
+     *
+     * @param buffer
+     * @param position of the length byte
+     */
+    public static void end(ByteBuffer out, int lengthAt) {
+        out.put(lengthAt, (byte) (out.position() - lengthAt - 1));
+    }
+
+    /**
+     * method for writing a message with only ints in it
+     *
+     * @param buffer (needs HEADER_BYTES + 4 * values free)
+     * @param message type
+     * @param values
+     */
+    public static void putInts(ByteBuffer out, int type, int... values) {
+        int at = begin(out, type);
+        for (int value : values) {
+            out.putInt(value);
+        }
+        end(out, at);
+    }
+}
@@ -0,0 +1,33 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * RandomPlayer.java
+ * @author V. Aiden
+ * 
+ * RandomPlayer presses random keys, it is the simplest possible player and is
+ * used as a baseline when running tournaments
+ */
+
+import java.util.SplittableRandom;
+
+public class RandomPlayer implements Player {
+    //no hard drop so the baseline stays the same as before it was added
+    private static final Action[] ACTIONS = {Action.LEFT, Action.RIGHT, Action.DOWN, Action.ROTATE, Action.HOLD};
+    private final SplittableRandom random;
+
+    /**
+     * constructor for random player
+     *
+     * @param seed
+     */
+    public RandomPlayer(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public Action nextAction(GameEngine engine) {
+    	//wait for gravity about half the time so pieces don't just spin forever
+        int pick = random.nextInt(ACTIONS.length * 2);
+        return pick < ACTIONS.length ? ACTIONS[pick] : null;
+    }
+}
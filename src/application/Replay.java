@@ -0,0 +1,232 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Replay.java
+ * @author V. Aiden
+ * 
+ * Replay is a recorded game: the seed and settings it started with, every input the player
+ * made and the final result, games are deterministic so that is enough to play it again exactly
+ * 
+ * FILE FORMAT (big endian):
+ * "TRPL"                        magic
+ * version                       1 byte
+ * seed                          8 bytes
+ * piece generator mode          1 byte
+ * dropAcceleration              8 bytes (double, MIN_DROP_ACCELERATION to MAX_DROP_ACCELERATION)
+ * minDropInterval               8 bytes (double, always MIN_DROP_INTERVAL)
+ * events length                 varint
+ * events                        see below
+ * score, lines, ticks, pieces   varints (the result the recorder saw)
+ * 
+ * EVENTS:
+ * every input is one varint of (ticks since the last input << 3 | action),
+ * inputs in the same tick are just 1 byte, the last event uses END as the action
+ * and its tick delta brings the game up to its final tick
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+public class Replay {
+    public static final int MAGIC = 0x5452504C; //"TRPL"
+    public static final int VERSION = 2; //2: event ticks are fixed TICK_MS simulation ticks (1 was gravity drops)
+    static final int ACTION_BITS = 3;
+    static final int END = 7; //action code of the last event
+    static final Action[] ACTIONS = Action.values();
+
+    //settings the game can be played with (the difficulty dialog allows 10-1000, the minimum interval is fixed)
+    public static final double MIN_DROP_ACCELERATION = 10;
+    public static final double MAX_DROP_ACCELERATION = 1000;
+    public static final double MIN_DROP_INTERVAL = 100;
+
+    //header
+    public final long seed;
+    public final PieceGenerator.Mode mode;
+    public final double dropAcceleration;
+    public final double minDropInterval;
+
+    //inputs
+    final byte[] events;
+
+    //the result when it was recorded
+    public final int score;
+    public final int lines;
+    public final long ticks;
+    public final long pieces;
+
+    /**
+     * constructor for replay
+     */
+    Replay(long seed, PieceGenerator.Mode mode, double dropAcceleration, double minDropInterval,
+            byte[] events, int score, int lines, long ticks, long pieces) {
+        this.seed = seed;
+        this.mode = mode;
+        this.dropAcceleration = dropAcceleration;
+        this.minDropInterval = minDropInterval;
+        this.events = events;
+        this.score = score;
+        this.lines = lines;
+        this.ticks = ticks;
+        this.pieces = pieces;
+    }
+
+    /**
+     * method for making the engine this replay starts from
+     *
+     * @return new game at tick 0
+     */
+    public GameEngine newGame() {
+        GameEngine engine = new GameEngine(seed, mode);
+        engine.setDropAcceleration(dropAcceleration);
+        engine.setMinDropInterval(minDropInterval);
+        return engine;
+    }
+
+    /**
+     * method for the amount of bytes the inputs take up
+     *
+     * @return bytes
+     */
+    public int getEventBytes() {
+        return events.length;
+    }
+
+    /**
+     * method for writing the replay
+     *
+     * @param stream to write to (not closed)
+     * @throws IOException
+     */
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(seed);
+        out.writeByte(mode.ordinal());
+        out.writeDouble(dropAcceleration);
+        out.writeDouble(minDropInterval);
+        writeVarint(out, events.length);
+        out.write(events);
+        writeVarint(out, score);
+        writeVarint(out, lines);
+        writeVarint(out, ticks);
+        writeVarint(out, pieces);
+        out.flush();
+    }
+
+    /**
+     * method for the replay as bytes
+     *
+     * @return file contents
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + events.length);
+        try {
+            write(bytes);
+        } catch (IOException e) { //can't happen with a byte array
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * method for reading a replay
+     *
+     * @param stream to read from (read to the end, not closed)
+     * @return replay
+     * @throws IOException if it isn't a replay or is cut off
+     */
+    public static Replay read(InputStream stream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = stream.read(chunk)) > 0) {
+            bytes.write(chunk, 0, n);
+        }
+        return fromBytes(bytes.toByteArray());
+    }
+
+    /**
+     * method for reading a replay from bytes
+     *
+     * @param file contents
+     * @return replay
+     * @throws IOException if it isn't a replay or is cut off
+     */
+    public static Replay fromBytes(byte[] bytes) throws IOException {
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * method for reading a replay from a buffer (a file read with NIO or memory mapped)
+     *
+     * @param buffer positioned at the start of the replay (big endian)
+     * @return replay
+     * @throws IOException if it isn't a replay or is cut off
+     */
+    public static Replay read(ByteBuffer in) throws IOException {
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a replay file");
+            }
+            int version = in.get() & 0xFF;
+            if (version != VERSION) {
+                throw new IOException("Unsupported replay version " + version);
+            }
+            long seed = in.getLong();
+            int mode = in.get() & 0xFF;
+            if (mode >= PieceGenerator.Mode.values().length) {
+                throw new IOException("Unknown piece generator mode " + mode);
+            }
+            double dropAcceleration = in.getDouble();
+            double minDropInterval = in.getDouble();
+            //NaN or out of range settings could turn gravity off (never ending games, or high scores without it)
+            if (!(dropAcceleration >= MIN_DROP_ACCELERATION && dropAcceleration <= MAX_DROP_ACCELERATION)) {
+                throw new IOException("Drop acceleration " + dropAcceleration + " is not between "
+                        + MIN_DROP_ACCELERATION + " and " + MAX_DROP_ACCELERATION);
+            }
+            if (minDropInterval != MIN_DROP_INTERVAL) {
+                throw new IOException("Minimum drop interval " + minDropInterval + " is not " + MIN_DROP_INTERVAL);
+            }
+            long length = readVarint(in);
+            if (length > in.remaining()) {
+                throw new IOException("Replay events cut off (" + length + " bytes expected)");
+            }
+            byte[] events = new byte[(int) length];
+            in.get(events);
+            int score = (int) readVarint(in);
+            int lines = (int) readVarint(in);
+            long ticks = readVarint(in);
+            long pieces = readVarint(in);
+            return new Replay(seed, PieceGenerator.Mode.values()[mode], dropAcceleration, minDropInterval,
+                    events, score, lines, ticks, pieces);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Replay file is cut off");
+        }
+    }
+
+    static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) { //7 bits at a time, high bit = more bytes
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarint(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+}
@@ -0,0 +1,83 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * ReplayHandler.java
+ * @author V. Aiden
+ * 
+ * ReplayHandler saves finished games as replay files in data/replays
+ * (kept separate from the main class like HighScoreHandler)
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import simpleIO.Console;
+
+public class ReplayHandler {
+    public static final String REPLAY_FOLDER = "data/replays";
+    public static final String EXTENSION = ".trpl";
+
+    /**
+     * method for making the id (file name without the extension) of a replay
+     *
+     * @param replay
+     * @return id
+     */
+    public static String replayId(Replay replay) {
+        return System.currentTimeMillis() + "-" + Long.toHexString(replay.seed);
+    }
+
+    /**
+     * method to save a replay to the replay folder
+     *
+     * @param replay
+     * @param id (file name without the extension)
+     * @return true if it was saved
+     */
+    public static boolean saveReplay(Replay replay, String id) {
+        File folder = new File(REPLAY_FOLDER);
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            Console.print("Could not make the replay folder: " + folder);
+            return false;
+        }
+
+        //write a temp file first then rename it, a crash never leaves a half written replay behind
+        File temp = new File(folder, id + EXTENSION + ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp);
+                    OutputStream out = new BufferedOutputStream(file)) {
+                replay.write(out);
+                out.flush();
+                file.getFD().sync();
+            }
+            commit(temp.toPath(), new File(folder, id + EXTENSION).toPath());
+            return true;
+        } catch (IOException e) {
+            Console.print("Error writing replay: " + e.getMessage());
+            temp.delete();
+            return false;
+        }
+    }
+
+    /**
+     * method for replacing a file with a finished temp file in one step
+     *
+     * @param temp file
+     * @param target file
+     * @throws IOException if it can't be moved
+     */
+    static void commit(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) { //some network drives can't, still replace it
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * ReplayPlayer.java
+ * @author V. Aiden
+ * 
+ * ReplayPlayer plays a Replay back on a headless engine as fast as it can
+ * 
+ * a player made for seeking can also jump to any tick, while playing it saves a snapshot of the game
+ * every KEYFRAME_TICKS ticks (a keyframe) so going back only replays from the closest keyframe instead
+ * of from the start, each snapshot shares the board rows that didn't change with the keyframe before it,
+ * a plain player (verifying, fast forwarding) keeps no keyframes so its memory doesn't grow with the game
+ * 
+ * usage: ReplayPlayer FILE [FILE ...] (plays each file to the end and checks the result)
+ */
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import simpleIO.Console;
+
+public class ReplayPlayer {
+    public static final int KEYFRAME_TICKS = GameEngine.TICKS_PER_SECOND; //every second of game
+
+    private final Replay replay;
+    private GameEngine engine;
+    private final List<Keyframe> keyframes; //null = can't seek backwards
+
+    //where playback is in the events
+    private int position = 0; //byte index of the event after the next one
+    private long eventTick = 0; //tick of the next event
+    private int eventCode = Replay.END; //action of the next event
+    private boolean finished = false; //past the END event
+
+    /**
+     * a snapshot of the game and where playback was, right after a tick
+     */
+    private static class Keyframe {
+        final GameEngine.Snapshot game;
+        final int position;
+        final long eventTick;
+        final int eventCode;
+
+        Keyframe(GameEngine.Snapshot game, int position, long eventTick, int eventCode) {
+            this.game = game;
+            this.position = position;
+            this.eventTick = eventTick;
+            this.eventCode = eventCode;
+        }
+    }
+
+    /**
+     * constructor for a plain replay player that only plays forward (starts at tick 0)
+     *
+     * @param replay to play
+     */
+    public ReplayPlayer(Replay replay) {
+        this(replay, false);
+    }
+
+    /**
+     * constructor for replay player (starts at tick 0)
+     *
+     * @param replay to play
+     * @param true = keep keyframes so seek can go backwards
+     */
+    public ReplayPlayer(Replay replay, boolean seekable) {
+        this.replay = replay;
+        engine = replay.newGame();
+        readEvent();
+        if (seekable) {
+            keyframes = new ArrayList<>();
+            keyframes.add(new Keyframe(engine.snapshot(), position, eventTick, eventCode));
+        } else {
+            keyframes = null;
+        }
+    }
+
+    private void readEvent() { //decode the next event (throws if the events are cut off)
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (position >= replay.events.length || shift >= 64) {
+                throw new IllegalStateException("Replay events are corrupt at byte " + position);
+            }
+            int b = replay.events[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+            	break;
+            }
+        }
+        eventTick += value >>> Replay.ACTION_BITS;
+        eventCode = (int) (value & ((1 << Replay.ACTION_BITS) - 1));
+        if (eventCode != Replay.END && eventCode >= Replay.ACTIONS.length) {
+            throw new IllegalStateException("Unknown action " + eventCode + " at byte " + position);
+        }
+    }
+
+    /**
+     * method for playing forward until a tick (every input of that tick is applied)
+     *
+     * @param tick to stop at
+     * @return the game at that tick, or earlier if the replay ended first
+     */
+    public GameEngine playTo(long tick) {
+        while (!finished) {
+            long stop = Math.min(tick, eventTick);
+            while (engine.getTicks() < stop && !engine.isGameOver()) {
+                engine.tick();
+                if (keyframes != null && engine.getTicks() % KEYFRAME_TICKS == 0 && engine.getTicks() / KEYFRAME_TICKS == keyframes.size()) {
+                    GameEngine.Snapshot last = keyframes.get(keyframes.size() - 1).game;
+                    keyframes.add(new Keyframe(engine.snapshot(last), position, eventTick, eventCode));
+                }
+            }
+            if (eventTick > tick || (engine.isGameOver() && engine.getTicks() < eventTick)) {
+            	return engine; //stop is before the next event (or the game ended early, which is caught by the checks)
+            }
+            if (eventCode == Replay.END) {
+                finished = true;
+                return engine;
+            }
+            engine.step(Replay.ACTIONS[eventCode]);
+            readEvent();
+        }
+        return engine;
+    }
+
+    /**
+     * method for playing the whole replay as fast as possible
+     *
+     * @return the game at the end
+     */
+    public GameEngine playToEnd() {
+        return playTo(Long.MAX_VALUE);
+    }
+
+    /**
+     * method for jumping to any tick (backwards starts from the closest keyframe)
+     *
+     * @param tick
+     * @return the game at that tick (owned by the player, copy or snapshot it to keep it)
+     * @throws IllegalStateException going backwards on a player that wasn't made for seeking
+     */
+    public GameEngine seek(long tick) {
+        if (tick < engine.getTicks()) {
+            if (keyframes == null) {
+                throw new IllegalStateException("Replay player was not made for seeking");
+            }
+        	//go back to the last keyframe at or before the tick
+            Keyframe frame = keyframes.get((int) Math.min(keyframes.size() - 1, tick / KEYFRAME_TICKS));
+            engine.restore(frame.game);
+            position = frame.position;
+            eventTick = frame.eventTick;
+            eventCode = frame.eventCode;
+            finished = false;
+        }
+        return playTo(tick);
+    }
+
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * method for checking that the game at the end matches what the recorder saw
+     *
+     * @param game at the end
+     * @param replay
+     * @return null if it matches, otherwise what is different
+     */
+    public static String mismatch(GameEngine end, Replay replay) {
+        if (end.getScore() != replay.score) {
+            return "score " + end.getScore() + " != " + replay.score;
+        }
+        if (end.getLines() != replay.lines) {
+            return "lines " + end.getLines() + " != " + replay.lines;
+        }
+        if (end.getTicks() != replay.ticks) {
+            return "ticks " + end.getTicks() + " != " + replay.ticks;
+        }
+        if (end.getPieces() != replay.pieces) {
+            return "pieces " + end.getPieces() + " != " + replay.pieces;
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws IOException {
+        for (String file : args) {
+            Replay replay;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                replay = Replay.read(in);
+            }
+            long start = System.nanoTime();
+            GameEngine end = new ReplayPlayer(replay).playToEnd();
+            double ms = (System.nanoTime() - start) / 1e6;
+            String problem = mismatch(end, replay);
+            Console.print(String.format("%s: score %d, lines %d, %d ticks, %d input bytes, played in %.2f ms -> %s",
+                    file, end.getScore(), end.getLines(), end.getTicks(), replay.getEventBytes(), ms,
+                    problem == null ? "OK" : "MISMATCH (" + problem + ")"));
+        }
+    }
+}
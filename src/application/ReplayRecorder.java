@@ -0,0 +1,71 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * ReplayRecorder.java
+ * @author V. Aiden
+ * 
+ * ReplayRecorder writes down every input the engine gets (see Replay for the format)
+ * recording an input is just a couple of bytes put in an array, so it costs next to nothing per frame
+ */
+
+import java.util.Arrays;
+
+public class ReplayRecorder {
+    private final long seed;
+    private final PieceGenerator.Mode mode;
+    private final double dropAcceleration;
+    private final double minDropInterval;
+
+    private byte[] events = new byte[256]; //grows when full
+    private int length = 0;
+    private long lastTick = 0;
+
+    /**
+     * constructor for recorder, starts recording the engine right away
+     *
+     * @param engine (new game at tick 0)
+     */
+    public ReplayRecorder(GameEngine engine) {
+        seed = engine.getSeed();
+        mode = engine.getMode();
+        dropAcceleration = engine.getDropAcceleration();
+        minDropInterval = engine.getMinDropInterval();
+        engine.setRecorder(this);
+    }
+
+    /**
+     * method for recording an input (called by the engine)
+     *
+     * @param tick the input happened in
+     * @param action
+     */
+    void record(long tick, Action action) {
+        writeEvent(tick, action.ordinal());
+    }
+
+    private void writeEvent(long tick, int code) {
+        long value = ((tick - lastTick) << Replay.ACTION_BITS) | code;
+        lastTick = tick;
+        if (length + 10 > events.length) { //a varint is at most 10 bytes
+            events = Arrays.copyOf(events, events.length * 2);
+        }
+        while ((value & ~0x7FL) != 0) {
+            events[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        events[length++] = (byte) value;
+    }
+
+    /**
+     * method for finishing the recording
+     *
+     * @param engine (at the end of the game)
+     * @return the replay
+     */
+    public Replay finish(GameEngine engine) {
+        engine.setRecorder(null);
+        writeEvent(engine.getTicks(), Replay.END);
+        return new Replay(seed, mode, dropAcceleration, minDropInterval, Arrays.copyOf(events, length),
+                engine.getScore(), engine.getLines(), engine.getTicks(), engine.getPieces());
+    }
+}
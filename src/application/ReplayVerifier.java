@@ -0,0 +1,231 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * ReplayVerifier.java
+ * @author V. Aiden
+ * 
+ * ReplayVerifier checks submitted high scores, a score only counts if playing its replay
+ * again gives the exact same result (score, lines, ticks and pieces) and the game actually ended
+ * 
+ * it goes through a whole folder of replay files at once, split over every core with fork-join,
+ * each worker reads files with NIO into one reused buffer (big files are memory mapped instead)
+ * and the counts are only merged when the tasks join
+ * 
+ * usage: ReplayVerifier FOLDER [--threads N] [--rejects FILE]
+ */
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import simpleIO.Console;
+
+public class ReplayVerifier {
+    private static final long MAP_THRESHOLD = 1 << 20; //files bigger than 1MB get memory mapped
+    private static final String NOT_ENDED = "game did not end";
+
+    public enum Verdict {
+        VERIFIED,   //result matches
+        MISMATCH,   //claimed result is different from the real one
+        UNFINISHED, //the game never reached game over
+        CORRUPT     //not a readable replay
+    }
+
+    /**
+     * counts for a batch of files plus the ones that were rejected
+     */
+    public static class Report {
+        public final long[] counts = new long[Verdict.values().length];
+        public final List<String> rejects = new ArrayList<>(); //"file: reason"
+        public long bytes = 0;
+        public long elapsedNanos = 0;
+
+        private Report merge(Report other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            rejects.addAll(other.rejects);
+            bytes += other.bytes;
+            return this;
+        }
+
+        public long total() {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            return total;
+        }
+
+        public long count(Verdict verdict) {
+            return counts[verdict.ordinal()];
+        }
+    }
+
+    /**
+     * method for checking one replay
+     *
+     * @param replay
+     * @return null if the claimed result is real, otherwise why not
+     */
+    public static String verify(Replay replay) {
+        //never play past the claimed end, a replay whose events go on longer is a mismatch anyway
+        GameEngine end = new ReplayPlayer(replay).playTo(replay.ticks + 1);
+        String problem = ReplayPlayer.mismatch(end, replay);
+        if (problem != null) {
+            return problem;
+        }
+        if (!end.isGameOver()) {
+            return NOT_ENDED;
+        }
+        return null;
+    }
+
+    /**
+     * fork-join task that verifies the files from index from (inclusive) to to (exclusive)
+     */
+    private static class VerifyTask extends RecursiveTask<Report> {
+        private static final long serialVersionUID = 1L;
+        private final List<Path> files;
+        private final int from, to, threshold;
+
+        VerifyTask(List<Path> files, int from, int to, int threshold) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Report compute() {
+            if (to - from > threshold) { //split in half
+                int mid = (from + to) >>> 1;
+                VerifyTask left = new VerifyTask(files, from, mid, threshold);
+                left.fork();
+                Report right = new VerifyTask(files, mid, to, threshold).compute();
+                return left.join().merge(right);
+            }
+
+            Report report = new Report();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024); //reused for every file of this task
+            for (int i = from; i < to; i++) {
+                Path file = files.get(i);
+                Verdict verdict;
+                String reason = null;
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    report.bytes += size;
+                    ByteBuffer data;
+                    if (size > MAP_THRESHOLD) {
+                        data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    } else {
+                        if (size > buffer.capacity()) {
+                        	buffer = ByteBuffer.allocate((int) size);
+                        }
+                        buffer.clear();
+                        buffer.limit((int) size);
+                        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                        	//keep reading until the file is in the buffer
+                        }
+                        buffer.flip();
+                        data = buffer;
+                    }
+                    reason = verify(Replay.read(data));
+                    if (reason == null) {
+                        verdict = Verdict.VERIFIED;
+                    } else {
+                        verdict = reason.equals(NOT_ENDED) ? Verdict.UNFINISHED : Verdict.MISMATCH;
+                    }
+                } catch (IOException | RuntimeException e) { //unreadable file or corrupt events
+                    verdict = Verdict.CORRUPT;
+                    reason = e.getMessage();
+                }
+                report.counts[verdict.ordinal()]++;
+                if (verdict != Verdict.VERIFIED) {
+                    report.rejects.add(file.getFileName() + ": " + verdict + " (" + reason + ")");
+                }
+            }
+            return report;
+        }
+    }
+
+    /**
+     * method for verifying every replay file in a folder
+     *
+     * @param folder
+     * @param pool to verify on
+     * @return report
+     * @throws IOException if the folder can't be listed
+     */
+    public static Report verifyFolder(Path folder, ForkJoinPool pool) throws IOException {
+        long start = System.nanoTime();
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*" + ReplayHandler.EXTENSION)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Report report;
+        if (files.isEmpty()) {
+            report = new Report();
+        } else {
+            int threshold = Math.max(1, files.size() / (pool.getParallelism() * 8));
+            report = pool.invoke(new VerifyTask(files, 0, files.size(), threshold));
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            Console.print("usage: ReplayVerifier FOLDER [--threads N] [--rejects FILE]");
+            return;
+        }
+        Path folder = Paths.get(args[0]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        String rejectsFile = null;
+        Map<String, String> options = Options.parse(args, 1, "--threads", "--rejects");
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String value = option.getValue();
+            switch (option.getKey()) { //unknown options were already rejected
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--rejects": rejectsFile = value; break;
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Report report = verifyFolder(folder, pool);
+        pool.shutdown();
+
+        double seconds = report.elapsedNanos / 1e9;
+        Console.print(String.format("Checked %d replays (%.1f MB) on %d threads in %.2f s: %.0f replays/sec",
+                report.total(), report.bytes / (1024.0 * 1024.0), threads, seconds, report.total() / Math.max(seconds, 1e-9)));
+        for (Verdict verdict : Verdict.values()) {
+            Console.print(String.format("  %-10s %d", verdict, report.count(verdict)));
+        }
+
+        if (rejectsFile != null) {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(rejectsFile)))) {
+                for (String reject : report.rejects) {
+                    out.println(reject);
+                }
+            }
+            Console.print("Rejected files written to " + rejectsFile);
+        } else {
+            for (String reject : report.rejects) {
+                Console.print("  rejected " + reject);
+            }
+        }
+    }
+}
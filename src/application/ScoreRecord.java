@@ -0,0 +1,42 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * ScoreRecord.java
+ * @author V. Aiden
+ * 
+ * ScoreRecord is one finished game on the leaderboard, it never changes after being made
+ * (the leaderboard log only ever gets new records added to the end)
+ */
+
+public class ScoreRecord {
+    public final String player;
+    public final int score;
+    public final int lines;
+    public final long duration; //length of the game in ms
+    public final long timestamp; //when the game ended (ms since 1970)
+    public final String replayId; //replay file of the game, empty if there isn't one
+
+    /**
+     * constructor for score record
+     *
+     * @param player name
+     * @param score
+     * @param lines cleared
+     * @param duration (ms)
+     * @param timestamp (ms since 1970)
+     * @param replay id
+     */
+    public ScoreRecord(String player, int score, int lines, long duration, long timestamp, String replayId) {
+        this.player = player;
+        this.score = score;
+        this.lines = lines;
+        this.duration = duration;
+        this.timestamp = timestamp;
+        this.replayId = replayId == null ? "" : replayId;
+    }
+
+    @Override
+    public String toString() {
+        return player + " " + score + " (" + lines + " lines, " + duration / 1000 + "s)";
+    }
+}
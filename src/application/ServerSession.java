@@ -0,0 +1,289 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * ServerSession.java
+ * @author V. Aiden
+ *
+ * ServerSession is one player's game on the GameServer
+ *
+ * a session is just state (no thread of its own): the server loop that owns it reads the player's
+ * input bytes into a small buffer, then on every tick applies them, moves the game forward and
+ * writes what changed since the last tick into the output buffer (see Protocol)
+ *
+ * both buffers have a fixed size so a session always uses about the same memory (a couple of KB),
+ * a client that reads too slowly just misses updates: the rows it was last sent are remembered,
+ * so the next STATE that fits has every row that changed since then and it catches up
+ *
+ * line clears attack the opponent: 2 lines send 1 garbage line, 3 send 2 and 4 send 4,
+ * the opponent always runs on the same loop thread so nothing here is locked
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.SplittableRandom;
+
+public class ServerSession {
+    public static final int IN_CAPACITY = 64; //inputs waiting for the next tick (more just wait in the socket)
+    public static final int OUT_CAPACITY = 1024;
+    private static final int FINAL_BYTES = Protocol.HEADER_BYTES + 8; //always kept free for GAME_OVER
+    private static final int[] ATTACK = {0, 0, 1, 2, 4}; //garbage sent for 0-4 lines cleared
+    private static final Action[] ACTIONS = Action.values();
+
+    public final int id;
+    private final SocketChannel channel;
+    private SelectionKey key;
+    private final GameEngine engine;
+    private final SplittableRandom holes; //garbage hole columns
+    private final ByteBuffer in = ByteBuffer.allocate(IN_CAPACITY);
+    private final ByteBuffer out = ByteBuffer.allocate(OUT_CAPACITY);
+
+    //what the client was last sent
+    private final int[] sentRows = new int[Board.ROWS];
+    private int sentPiece = -1, sentExtra = -1, sentScore = 0, sentLines = 0;
+
+    private ServerSession opponent = null;
+    private int incomingGarbage = 0; //lines the opponent sent since the last tick
+    private boolean closing = false; //close once the output is written
+    private boolean closed = false;
+    private long bytesSent = 0;
+    private long skippedStates = 0; //states that didn't fit in the output buffer
+
+    /**
+     * constructor for server session (the game starts right away)
+     *
+     * @param session id
+     * @param channel (non blocking)
+     * @param seed of the game
+     * @param piece generator mode
+     */
+    public ServerSession(int id, SocketChannel channel, long seed, PieceGenerator.Mode mode) {
+        this.id = id;
+        this.channel = channel;
+        engine = new GameEngine(seed, mode);
+        holes = new SplittableRandom(~seed);
+        for (int y = 0; y < Board.ROWS; y++) {
+            sentRows[y] = -1; //not sent yet -> the first state has every row
+        }
+        int at = Protocol.begin(out, Protocol.HELLO);
+        out.putInt(id);
+        out.putLong(seed);
+        Protocol.end(out, at);
+    }
+
+    /**
+     * method called by the loop once the channel is registered with its selector
+     *
+     * @param selection key
+     */
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * method for pairing two sessions up (both must be on the same loop)
+     *
+     * @param opponent (null for none)
+     */
+    void setOpponent(ServerSession opponent) {
+        this.opponent = opponent;
+        if (room(Protocol.HEADER_BYTES + 4)) {
+            Protocol.putInts(out, Protocol.OPPONENT, opponent == null ? -1 : opponent.id);
+        }
+    }
+
+    /**
+     * method for reading whatever input bytes arrived (called when the channel is readable)
+     */
+    void read() {
+        if (closed) {
+        	return;
+        }
+        try {
+            if (!in.hasRemaining()) { //full, let the rest wait in the socket until the next tick
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                return;
+            }
+            if (channel.read(in) < 0) { //client hung up
+                close();
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * method for one game tick: apply the inputs, add garbage, gravity, then queue the changes
+     */
+    void tick() {
+        if (closed || closing) {
+        	return;
+        }
+        in.flip();
+        while (in.hasRemaining() && !engine.isGameOver()) {
+            int code = in.get();
+            if (code == Protocol.QUIT) {
+                closing = true;
+                break;
+            }
+            if (code >= 0 && code < ACTIONS.length) { //anything else is ignored
+                int before = engine.getLines();
+                engine.step(ACTIONS[code]);
+                attack(engine.getLines() - before);
+            }
+        }
+        in.clear();
+        if ((key.interestOps() & SelectionKey.OP_READ) == 0) { //there is room again
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+
+        if (incomingGarbage > 0) {
+            engine.addGarbage(incomingGarbage, holes.nextInt(Board.COLUMNS));
+            if (room(Protocol.HEADER_BYTES + 1)) {
+                int at = Protocol.begin(out, Protocol.GARBAGE);
+                out.put((byte) incomingGarbage);
+                Protocol.end(out, at);
+            }
+            incomingGarbage = 0;
+        }
+
+        int before = engine.getLines();
+        engine.tick();
+        attack(engine.getLines() - before);
+        writeState();
+
+        if (engine.isGameOver()) {
+            Protocol.putInts(out, Protocol.GAME_OVER, engine.getScore(), engine.getLines());
+            closing = true;
+        }
+    }
+
+    private boolean room(int bytes) { //true if a message fits and still leaves room for GAME_OVER
+        return out.remaining() >= bytes + FINAL_BYTES;
+    }
+
+    private void attack(int cleared) { //send garbage to the opponent for a line clear
+        if (cleared > 0 && opponent != null && !opponent.closed) {
+            opponent.incomingGarbage += ATTACK[Math.min(cleared, 4)];
+        }
+    }
+
+    //writes the rows, piece and score that changed since the client was last sent them
+    private void writeState() {
+        Board board = engine.getBoard();
+        int piece = Protocol.packPiece(engine.getCurrent());
+        Tetromino hold = engine.getHold();
+        int extra = (hold == null ? 0 : hold.type + 1) << 4 | engine.peekNext();
+        int changed = 0;
+        for (int y = 0; y < Board.ROWS; y++) {
+            if (board.getColorRow(y) != sentRows[y]) {
+                changed++;
+            }
+        }
+
+        if (changed > 0 || piece != sentPiece || extra != sentExtra) {
+            if (!room(Protocol.HEADER_BYTES + 8 + changed * Protocol.ROW_BYTES)) {
+                skippedStates++; //client is behind, it gets these rows in a later state
+            } else {
+                int at = Protocol.begin(out, Protocol.STATE);
+                out.putInt((int) engine.getTicks());
+                out.putShort((short) piece);
+                out.put((byte) extra);
+                out.put((byte) changed);
+                for (int y = 0; y < Board.ROWS && changed > 0; y++) {
+                    int row = board.getColorRow(y);
+                    if (row != sentRows[y]) {
+                        out.put((byte) y);
+                        out.putInt(row);
+                        sentRows[y] = row;
+                        changed--;
+                    }
+                }
+                Protocol.end(out, at);
+                sentPiece = piece;
+                sentExtra = extra;
+            }
+        }
+
+        if ((engine.getScore() != sentScore || engine.getLines() != sentLines) && room(Protocol.HEADER_BYTES + 8)) {
+            Protocol.putInts(out, Protocol.SCORE, engine.getScore(), engine.getLines());
+            sentScore = engine.getScore();
+            sentLines = engine.getLines();
+        }
+    }
+
+    /**
+     * method for sending what is in the output buffer (called after every tick and when the channel is writable)
+     */
+    void flush() {
+        if (closed) {
+        	return;
+        }
+        if (out.position() == 0 && !closing) { //nothing to send (most ticks), skip the system call
+        	return;
+        }
+        try {
+            out.flip();
+            bytesSent += channel.write(out);
+            boolean more = out.hasRemaining();
+            out.compact();
+            if (more) { //socket is full, finish when it is writable again
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (closing) {
+                    close();
+                }
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * method for ending the session (the opponent keeps playing alone)
+     */
+    void close() {
+        if (closed) {
+        	return;
+        }
+        closed = true;
+        if (opponent != null) {
+            opponent.setOpponent(null);
+            opponent = null;
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+        	//already gone
+        }
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public boolean hasOpponent() {
+        return opponent != null;
+    }
+
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getSkippedStates() {
+        return skippedStates;
+    }
+}
@@ -0,0 +1,263 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * SpectatorPublisher.java
+ * @author V. Aiden
+ *
+ * SpectatorPublisher streams a live game to any amount of watchers
+ *
+ * every tick publish() encodes one frame with only what changed since the last frame,
+ * a tick where nothing changed is a single byte and a gravity drop is 3, every KEYFRAME_TICKS
+ * there is a keyframe with the whole state so watchers that join late can start from it
+ *
+ * a frame is encoded once and every watcher gets a read-only view of the same bytes (no copies),
+ * frames are cut out of big chunks that are never written again, so a watcher can keep a frame
+ * for as long as it wants
+ *
+ * FRAME:
+ * byte flags, then a part for every flag that is set (in this order)
+ * KEYFRAME  int tick (and every other part is there)
+ * PIECE     short piece (Protocol.packPiece)
+ * PREVIEW   short (hold type + 1) << 9 | next 3 types (3 bits each, first one highest)
+ * ROWS      3 byte mask of the rows that changed, then int colors for each (top to bottom)
+ * SCORE     int score, int lines
+ * GAME_OVER (nothing)
+ *
+ * usage: SpectatorPublisher [--watchers N] [--seconds N] [--seed N] (plays a bot game and checks every watcher)
+ */
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import simpleIO.Console;
+
+public class SpectatorPublisher {
+    public static final int KEYFRAME_TICKS = GameEngine.TICKS_PER_SECOND;
+
+    //frame flags
+    public static final int KEYFRAME = 1;
+    public static final int PIECE = 2;
+    public static final int PREVIEW = 4;
+    public static final int ROWS = 8;
+    public static final int SCORE = 16;
+    public static final int GAME_OVER = 32;
+
+    private static final int MAX_FRAME = 1 + 4 + 2 + 2 + 3 + Board.ROWS * 4 + 8;
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    /**
+     * something that watches a game
+     */
+    public interface Subscriber {
+        /**
+         * method called with every frame (on the thread that publishes)
+         *
+         * @param frame (read-only, its own position and limit)
+         */
+        void onFrame(ByteBuffer frame);
+    }
+
+    private static class Watcher {
+        final Subscriber subscriber;
+        boolean synced = false; //got a keyframe yet
+
+        Watcher(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+    }
+
+    private final List<Watcher> watchers = new CopyOnWriteArrayList<>();
+    private ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BYTES);
+
+    //what the last frame said
+    private final int[] rows = new int[Board.ROWS];
+    private int piece = -1, preview = -1, score = -1, lines = -1;
+    private boolean gameOver = false;
+    private long frames = 0;
+    private long bytes = 0;
+
+    /**
+     * method for adding a watcher (it gets frames from the next keyframe on)
+     *
+     * @param subscriber
+     */
+    public void subscribe(Subscriber subscriber) {
+        watchers.add(new Watcher(subscriber));
+    }
+
+    /**
+     * method for removing a watcher
+     *
+     * @param subscriber
+     */
+    public void unsubscribe(Subscriber subscriber) {
+        watchers.removeIf(w -> w.subscriber == subscriber);
+    }
+
+    /**
+     * method for publishing one tick of a game (call it after every tick)
+     *
+     * @param game
+     * @return the frame that was sent
+     */
+    public ByteBuffer publish(GameEngine engine) {
+        ByteBuffer frame = encode(engine);
+        boolean key = (frame.get(0) & KEYFRAME) != 0;
+        for (Watcher watcher : watchers) {
+            if (!watcher.synced && !key) {
+            	continue; //has to start from a keyframe
+            }
+            watcher.synced = true;
+            watcher.subscriber.onFrame(frame.duplicate());
+        }
+        return frame;
+    }
+
+    private ByteBuffer encode(GameEngine engine) {
+        if (chunk.remaining() < MAX_FRAME) { //the old chunk stays alive as long as someone has a frame in it
+            chunk = ByteBuffer.allocate(CHUNK_BYTES);
+        }
+        int start = chunk.position();
+        boolean key = frames % KEYFRAME_TICKS == 0;
+        Board board = engine.getBoard();
+
+        int newPiece = Protocol.packPiece(engine.getCurrent());
+        Tetromino hold = engine.getHold();
+        int newPreview = (hold == null ? 0 : hold.type + 1) << 9;
+        PieceQueue queue = engine.getNextQueue();
+        for (int i = 0; i < 3 && i < queue.size(); i++) {
+            newPreview |= queue.peek(i) << (6 - 3 * i);
+        }
+        int changedRows = 0;
+        for (int y = 0; y < Board.ROWS; y++) {
+            if (key || board.getColorRow(y) != rows[y]) {
+                changedRows |= 1 << y;
+            }
+        }
+
+        int flags = key ? KEYFRAME | PIECE | PREVIEW | ROWS | SCORE : 0;
+        if (newPiece != piece) {
+            flags |= PIECE;
+        }
+        if (newPreview != preview) {
+            flags |= PREVIEW;
+        }
+        if (changedRows != 0) {
+            flags |= ROWS;
+        }
+        if (engine.getScore() != score || engine.getLines() != lines) {
+            flags |= SCORE;
+        }
+        if (engine.isGameOver()) {
+            flags |= GAME_OVER;
+        }
+
+        chunk.put((byte) flags);
+        if (key) {
+            chunk.putInt((int) engine.getTicks());
+        }
+        if ((flags & PIECE) != 0) {
+            chunk.putShort((short) newPiece);
+            piece = newPiece;
+        }
+        if ((flags & PREVIEW) != 0) {
+            chunk.putShort((short) newPreview);
+            preview = newPreview;
+        }
+        if ((flags & ROWS) != 0) {
+            chunk.put((byte) (changedRows >>> 16));
+            chunk.putShort((short) changedRows);
+            for (int y = 0; y < Board.ROWS; y++) {
+                if ((changedRows & (1 << y)) != 0) {
+                    rows[y] = board.getColorRow(y);
+                    chunk.putInt(rows[y]);
+                }
+            }
+        }
+        if ((flags & SCORE) != 0) {
+            score = engine.getScore();
+            lines = engine.getLines();
+            chunk.putInt(score);
+            chunk.putInt(lines);
+        }
+        gameOver = engine.isGameOver();
+
+        //the frame is a read-only window on the bytes just written
+        ByteBuffer frame = chunk.duplicate();
+        frame.position(start);
+        frame.limit(chunk.position());
+        frames++;
+        bytes += chunk.position() - start;
+        return frame.slice().asReadOnlyBuffer();
+    }
+
+    public int getWatcherCount() {
+        return watchers.size();
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public static void main(String[] args) {
+        int watcherCount = 1000;
+        int seconds = 60;
+        long seed = 1;
+
+        //read the options
+        Map<String, String> options = Options.parse(args, 0, "--watchers", "--seconds", "--seed");
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String value = option.getValue();
+            switch (option.getKey()) { //unknown options were already rejected
+                case "--watchers": watcherCount = Integer.parseInt(value); break;
+                case "--seconds": seconds = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+            }
+        }
+
+        //a bot game with lots of watchers, every watcher is checked against the real game every tick
+        GameEngine engine = new GameEngine(seed, PieceGenerator.Mode.BAG);
+        Bot bot = new Bot();
+        SpectatorPublisher publisher = new SpectatorPublisher();
+        SpectatorView[] views = new SpectatorView[watcherCount];
+        for (int i = 0; i < views.length; i++) {
+            views[i] = new SpectatorView();
+            publisher.subscribe(views[i]);
+        }
+
+        long publishNanos = 0, mismatches = 0;
+        long maxTicks = (long) seconds * GameEngine.TICKS_PER_SECOND;
+        while (!engine.isGameOver() && engine.getTicks() < maxTicks) {
+            if (engine.getTicks() % 5 == 0) { //bot plays every 50ms like in the game
+                Action action = bot.nextAction(engine);
+                if (action != null) {
+                    engine.step(action);
+                }
+            }
+            engine.tick();
+            long start = System.nanoTime();
+            publisher.publish(engine);
+            publishNanos += System.nanoTime() - start;
+            for (SpectatorView view : views) {
+                if (!view.matches(engine)) {
+                    mismatches++;
+                }
+            }
+        }
+
+        long ticks = publisher.getFrames();
+        Console.print(String.format("%d ticks to %d watchers, %.2f bytes per tick per watcher (%d bytes total), publish %.2f us per tick",
+                ticks, views.length, publisher.getBytes() / (double) ticks, publisher.getBytes(), publishNanos / 1e3 / ticks));
+        Console.print(mismatches == 0 ? "Every watcher matched the game on every tick" : mismatches + " MISMATCHES");
+    }
+}
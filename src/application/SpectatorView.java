@@ -0,0 +1,115 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * SpectatorView.java
+ * @author V. Aiden
+ *
+ * SpectatorView is a watcher that rebuilds a game from the frames of a SpectatorPublisher
+ * (see there for the frame format), the state it has after a frame is what a spectator would draw
+ */
+
+import java.nio.ByteBuffer;
+
+public class SpectatorView implements SpectatorPublisher.Subscriber {
+    private final int[] rows = new int[Board.ROWS]; //Board color rows
+    private int piece = Protocol.NO_PIECE, preview = 0;
+    private int score = 0, lines = 0;
+    private long tick = -1; //-1 until the first keyframe
+    private boolean gameOver = false;
+    private long bytes = 0;
+
+    @Override
+    public void onFrame(ByteBuffer frame) {
+        bytes += frame.remaining();
+        int flags = frame.get();
+        if ((flags & SpectatorPublisher.KEYFRAME) != 0) {
+            tick = frame.getInt();
+        } else {
+            tick++; //one frame per tick
+        }
+        if ((flags & SpectatorPublisher.PIECE) != 0) {
+            piece = frame.getShort() & 0xFFFF;
+        }
+        if ((flags & SpectatorPublisher.PREVIEW) != 0) {
+            preview = frame.getShort() & 0xFFFF;
+        }
+        if ((flags & SpectatorPublisher.ROWS) != 0) {
+            int changed = (frame.get() & 0xFF) << 16 | frame.getShort() & 0xFFFF;
+            for (int y = 0; y < Board.ROWS; y++) {
+                if ((changed & (1 << y)) != 0) {
+                    rows[y] = frame.getInt();
+                }
+            }
+        }
+        if ((flags & SpectatorPublisher.SCORE) != 0) {
+            score = frame.getInt();
+            lines = frame.getInt();
+        }
+        gameOver = (flags & SpectatorPublisher.GAME_OVER) != 0;
+    }
+
+    /**
+     * method for checking the view shows the same thing as the real game
+     *
+     * @param game
+     * @return true if the board, pieces and score all match
+     */
+    public boolean matches(GameEngine engine) {
+        for (int y = 0; y < Board.ROWS; y++) {
+            if (rows[y] != engine.getBoard().getColorRow(y)) {
+            	return false;
+            }
+        }
+        Tetromino hold = engine.getHold();
+        return piece == Protocol.packPiece(engine.getCurrent()) && getHold() == (hold == null ? -1 : hold.type)
+                && getNext(0) == engine.peekNext() && score == engine.getScore() && lines == engine.getLines()
+                && tick == engine.getTicks() && gameOver == engine.isGameOver();
+    }
+
+    public int getColorRow(int y) {
+        return rows[y];
+    }
+
+    /**
+     * method for the falling tetromino
+     *
+     * @return packed piece (Protocol.pieceType, pieceX...), Protocol.NO_PIECE before the first keyframe
+     */
+    public int getPiece() {
+        return piece;
+    }
+
+    public int getHold() {
+        return (preview >>> 9) - 1;
+    }
+
+    /**
+     * method for one of the next tetrominos
+     *
+     * @param index (0-2)
+     * @return type
+     */
+    public int getNext(int index) {
+        return (preview >>> (6 - 3 * index)) & 7;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+}
@@ -27,13 +27,13 @@ package application;
  * 
  */
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
 
 import javafx.animation.AnimationTimer;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -48,17 +48,17 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 
 public class Tetris extends Application {
 	//constants
     private static final int TILE_SIZE = 30;
-    private static final int COLUMNS = 10;
-    private static final int ROWS = 20;
+    private static final int COLUMNS = Board.COLUMNS;
+    private static final int ROWS = Board.ROWS;
     
     //java fx
     private Stage mainStage;
@@ -76,38 +76,54 @@ public class Tetris extends Application {
     private Label scoreLabel;
     private Label gameOverLabel;
     private Label highScoreLabel;
-    private int score = 0;
     private int highScore = 0;
     
-    //variables related to controls and tetromino logic
-    private boolean leftPressed, rightPressed, downPressed, rotatePressed;
-    private long lastMoveTime, lastDownTime, lastRotateTime;
+    //key events go in a queue with their time and are applied on the tick they happened in (autorepeat too)
+    private final Controls controls = new Controls();
+    private int botCooldown; //ticks until the bot gets another input
+    private static final int BOT_REPEAT_TICKS = 5; //50ms between bot inputs
     
-    //delay values (in nanoseconds for more precision)
-    private static final long MOVE_DELAY_NS = 150_000_000; //150ms
-    private static final long FAST_DROP_DELAY_NS = 60_000_000; //60ms
-    private static final long ROTATE_DELAY_NS = 200_000_000; //200ms
+    //fixed timestep: the game always moves in whole ticks, frames just draw the latest state
+    private static final long TICK_NS = GameEngine.TICK_MS * 1_000_000L;
+    private static final long MAX_FRAME_NS = 250_000_000; //after a long stall don't try to catch up more than this
+    private long lastFrameTime; //0 = first frame of the game
+    private long accumulator; //time that hasn't been simulated yet
     
-    //tetromino dropping variables
-    private double dropInterval = 500; // milliseconds
-    private final double minDropInterval = 100; // minimum speed limit
-    private double dropAcceleration = 50; // how much to speed up each time (ms)
-    //INFO: I know it ramps up FAST but I just did this to show that it actually is speeding up
+    //performance numbers (F3 shows them, they are also saved to data/metrics.prom)
+    private final Metrics metrics = new Metrics();
+    private Label metricsOverlay;
+    private static final Path METRICS_FILE = Paths.get("data/metrics.prom");
+    private static final long OVERLAY_INTERVAL_NS = 500_000_000; //update the overlay twice a second
+    private static final long EXPORT_INTERVAL_NS = 10_000_000_000L; //save the metrics every 10 seconds
+    private long lastOverlayTime, lastExportTime;
     
-    //tetromino class and logic
-    private Tetromino current; //currently falling tetromino
-    private Tetromino hold = null; // tetromino being held
-    private boolean canHold = true; //prevent multi swaps
+    //AI autopilot for demos (3 piece lookahead spread over every core)
+    private Bot bot;
+    private boolean autopilot = false;
+    private final TranspositionTable botTable = new TranspositionTable(16); //kept between games
+    
+    //all the game rules and state (board, tetrominos, score, drop speed) live in the engine
+    //INFO: drop speed ramps up FAST on purpose, just to show that it actually is speeding up
+    private GameEngine engine = new GameEngine();
+    private ReplayRecorder recorder; //records every game so it can be played back
+    private long gameStartTime; //ms, for the leaderboard
+    //saving and loading happens on a background thread, results come back on the javafx thread
+    private final PersistenceService persistence = new PersistenceService(Platform::runLater);
+    private static final String PLAYER_NAME = System.getProperty("user.name", "Player");
     
     //arrays
-    private Queue<Integer> nextQueue = new LinkedList<>(); //queue for next tetrominos
-    private int[][] grid = new int[ROWS][COLUMNS]; //game grid
     private Image[] blockImages; //images
 
-    private Timeline gameLoop; //main game loop (aka drop timer)
-    private AnimationTimer inputLoop; //frame-by-frame input handling
+    private AnimationTimer gameLoop; //the one game loop (ticks + drawing)
+    private boolean playing = false; //false once game over has been handled
     
     private Image backgroundTile;
+    
+    //drawing only what changed
+    private TileAtlas atlas; //all tiles pre-scaled in one image
+    private BoardRenderer boardRenderer;
+    private final Tetromino miniPiece = new Tetromino(0); //reused for the hold and next previews
+    private int shownHold, shownNext, shownScore, shownHighScore; //what the side panel shows right now
 
     @Override
     public void start(Stage stage) {
@@ -125,12 +141,22 @@ public class Tetris extends Application {
         };
         
         backgroundTile = new Image(getClass().getResource("/images/BlackTile.png").toString());
+        //scale every tile to TILE_SIZE once instead of on every draw
+        atlas = new TileAtlas(backgroundTile, blockImages, TILE_SIZE);
         
         //load all scenes
         setupMenuScene();
         setupTutorialScene();
         setupGameOverScene();
         setupGameScene();
+        
+        //load the leaderboard in the background, the menu doesn't need it
+        persistence.load(HighScoreHandler::loadHighScore, score -> {
+        	if (score != null && score > highScore) {
+        		highScore = score;
+        		highScoreLabel.setText("High Score: " + highScore);
+        	}
+        });
 
         stage.setScene(menuScene);
         stage.setTitle("Tetris");
@@ -150,7 +176,7 @@ public class Tetris extends Application {
 
         startBtn.setOnAction(e -> mainStage.setScene(tutorialScene));
         setDifficultyBtn.setOnAction(e -> showDifficultyDialog());
-        exitBtn.setOnAction(e -> System.exit(0));
+        exitBtn.setOnAction(e -> exit());
         
         startBtn.setStyle("-fx-text-fill: white; -fx-background-insets: 0px; -fx-background-color: #7df59d; ");
         setDifficultyBtn.setStyle("-fx-text-fill: white; -fx-background-insets: 0px; -fx-background-color: #4f72db; ");
@@ -166,7 +192,7 @@ public class Tetris extends Application {
 
     private void setupTutorialScene() { //menu for controls and instructions to game
     	//tutorial for controls
-        Label tutorial = new Label("CONTROLS:\n\n← → : Move\n↓ : Accelerate down\n ↑ : Rotate\nZ : Hold Piece\n\nPress 'Start Game' to begin.");
+        Label tutorial = new Label("CONTROLS:\n\n← → : Move\n↓ : Accelerate down\n ↑ : Rotate\nZ : Hold Piece\nSPACE : Hard drop\nB : Bot autopilot\nF3 : Performance overlay\n\nPress 'Start Game' to begin.");
         tutorial.setFont(new Font(20));
         tutorial.setTextFill(Color.WHITE);
         tutorial.setAlignment(Pos.CENTER);
@@ -188,7 +214,7 @@ public class Tetris extends Application {
     }
     
     private void showDifficultyDialog() { //dialog screen for difficulty (I couldn't find spindler's dialog if she had one?)
-        TextInputDialog dialog = new TextInputDialog(String.valueOf((int) dropInterval));
+        TextInputDialog dialog = new TextInputDialog(String.valueOf((int) engine.getDropAcceleration()));
         //title and prompts
         dialog.setTitle("Set Difficulty Scaling");
         dialog.setHeaderText("Enter the ramp up speed amount (10-1000)");
@@ -200,7 +226,7 @@ public class Tetris extends Application {
                 if (customSpeed < 10 || customSpeed > 1000) { //check if it is less than 10 or greater than 1000
                     showAlert("Please enter a value between 10 and 1000."); //notify the user
                 } else {
-                	dropAcceleration = customSpeed; //new drop interval
+                	engine.setDropAcceleration(customSpeed); //new drop interval
                     showAlert("Drop interval set to " + customSpeed + " ms."); //notify user
                 }
             } catch (NumberFormatException ex) { //invalid inputs
@@ -223,7 +249,7 @@ public class Tetris extends Application {
         });
 
         Button exitBtn = new Button("Exit");
-        exitBtn.setOnAction(e -> System.exit(0));
+        exitBtn.setOnAction(e -> exit());
         
         //vbox layout
         VBox overLayout = new VBox(20, gameOverLabel, retryBtn, exitBtn);
@@ -238,6 +264,7 @@ public class Tetris extends Application {
     	//main canvas
         boardCanvas = new Canvas(COLUMNS * TILE_SIZE, ROWS * TILE_SIZE);
         boardGC = boardCanvas.getGraphicsContext2D();
+        boardRenderer = new BoardRenderer(boardGC, atlas);
 
         //canvas for block holding
         holdCanvas = new Canvas(4 * TILE_SIZE, 4 * TILE_SIZE);
@@ -265,7 +292,15 @@ public class Tetris extends Application {
         ((Label) sidePanel.getChildren().get(2)).setTextFill(Color.WHITE);
 
         //hbox for the actual main canvas which contains side panel
-        HBox root = new HBox(10, boardCanvas, sidePanel);
+        //performance overlay on top of the board (hidden until F3)
+        metricsOverlay = new Label();
+        metricsOverlay.setStyle("-fx-background-color: rgba(0, 0, 0, 0.7); -fx-text-fill: #7df59d; -fx-font-family: monospace; -fx-font-size: 11px; -fx-padding: 4px;");
+        metricsOverlay.setMouseTransparent(true);
+        metricsOverlay.setVisible(false);
+        StackPane boardPane = new StackPane(boardCanvas, metricsOverlay);
+        StackPane.setAlignment(metricsOverlay, Pos.TOP_LEFT);
+
+        HBox root = new HBox(10, boardPane, sidePanel);
         root.setPadding(new Insets(10));
         root.setBackground(new Background(new BackgroundFill(Color.BLACK, null, null)));
 
@@ -274,65 +309,99 @@ public class Tetris extends Application {
     }
 
     private void resetGame() { //method to reset the game
-    	//load high score
-    	highScore = HighScoreHandler.loadHighScore();
-    	
-    	//intialize all variables
-        score = 0;
-        grid = new int[ROWS][COLUMNS];
-        nextQueue.clear();
-        hold = null;
-        canHold = true;
-        dropInterval = 500; // reset speed at game start
-
-        //generate new tetrominos to kickstart the game
-        for (int i = 0; i < 3; i++) {
-        	nextQueue.add((int) (Math.random() * 7)); //add new from 7 tetromino shapes
-        }
-        
-        current = new Tetromino(nextQueue.poll()); //get new current tetromino
-        nextQueue.add((int) (Math.random() * 7)); //add new tetrominos to queue
+    	//intialize the board, queue, score and speed
+        engine.reset(System.nanoTime()); //new seed every game
+        recorder = new ReplayRecorder(engine);
+        gameStartTime = System.currentTimeMillis();
+        bot = new Bot(new Heuristic(), 3, 8, ForkJoinPool.commonPool(), botTable, true); //searches in the background
+        playing = true;
 
         //start the game loop
-        startGameLoop();
+        controls.reset();
+        botCooldown = 0;
+        lastFrameTime = 0;
+        accumulator = 0;
+        if (gameLoop != null) { //stops gameloop if there is one already
+        	gameLoop.stop();
+        }
         
-        //animation timer used for smooth tetromino controls movement (credit: Liam for the suggesting)
-        inputLoop = new AnimationTimer() {
+        //one animation timer runs the whole game (credit: Liam for the suggesting it for smooth controls)
+        gameLoop = new AnimationTimer() {
             @Override
             public void handle(long now) { //calls every frame (now is in nanoseconds)
-            	//logic used to make super smooth controls, its like key buffering
-                if (leftPressed && now - lastMoveTime > MOVE_DELAY_NS) { //if key is pressed and for more time than the allowed delay
-                    move(-1); drawAll(); lastMoveTime = now; //move -> new drawing -> change last move time
-                } else if (rightPressed && now - lastMoveTime > MOVE_DELAY_NS) {
-                    move(1); drawAll(); lastMoveTime = now;
-                }
-                if (downPressed && now - lastDownTime > FAST_DROP_DELAY_NS) {
-                    moveDown(); drawAll(); lastDownTime = now;
-                }
-                if (rotatePressed && now - lastRotateTime > ROTATE_DELAY_NS) {
-                    rotate(); drawAll(); lastRotateTime = now;
-                }
+            	if (lastFrameTime == 0) {
+            		lastFrameTime = now;
+            	}
+            	//add the real time that passed, then simulate it in fixed ticks
+            	accumulator += Math.min(now - lastFrameTime, MAX_FRAME_NS);
+            	lastFrameTime = now;
+            	metrics.frame(now);
+            	while (accumulator >= TICK_NS && playing) {
+            		//real time this tick ends at, inputs from before it belong to it
+            		timedTick(now - accumulator + TICK_NS);
+            		accumulator -= TICK_NS;
+            	}
+            	if (playing) {
+            		long start = System.nanoTime();
+            		drawAll((double) accumulator / TICK_NS);
+            		long drawn = System.nanoTime();
+            		metrics.draw(drawn - start);
+            		long input = controls.takePendingInput(); //oldest input this frame shows
+            		if (input != 0) {
+            			metrics.input(drawn - input);
+            		}
+            	}
+            	reportMetrics(now);
             }
         };
         //starts the animation timer
-        inputLoop.start();
+        gameLoop.start();
         
         //draws everything from graphics context
-        drawAll();
+        invalidateDrawing();
+        drawAll(0);
     }
 
-    private void startGameLoop() { //start a new game loop
-        if (gameLoop != null) { //stops gameloop if there is one already
-        	gameLoop.stop();
+    private void timedTick(long tickEnd) { //game tick with the metrics probe around it
+    	long drops = engine.getDrops();
+    	long locks = engine.getLocks();
+    	int lines = engine.getLines();
+    	long start = System.nanoTime();
+    	gameTick(tickEnd);
+    	metrics.tick(System.nanoTime() - start, engine.getDrops() - drops, engine.getLocks() - locks, engine.getLines() - lines);
+    }
+
+    private void reportMetrics(long now) { //overlay and file export (not every frame)
+    	if (metricsOverlay.isVisible() && now - lastOverlayTime > OVERLAY_INTERVAL_NS) {
+    		metricsOverlay.setText(metrics.overlay());
+    		lastOverlayTime = now;
+    	}
+    	if (now - lastExportTime > EXPORT_INTERVAL_NS) {
+    		exportMetrics();
+    		lastExportTime = now;
+    	}
+    }
+
+    private void exportMetrics() { //written on the persistence thread
+    	persistence.saveText(METRICS_FILE, metrics.toPrometheus(), null);
+    }
+
+    private void gameTick(long tickEnd) { //one fixed tick: inputs, then gravity
+    	//logic used to make super smooth controls, every key event up to the end of this tick plus autorepeat
+    	controls.tick(engine, tickEnd);
+    	
+    	botCooldown--;
+        if (autopilot && botCooldown <= 0) { //let the bot play
+            Action action = bot.nextAction(engine);
+            if (action != null) { //null = still thinking, ask again next tick
+            	update(action);
+            	botCooldown = BOT_REPEAT_TICKS;
+            }
         }
         
-        //create a new time line called gameloop that triggers moveDown() and drawlAll() every dropInterval
-        gameLoop = new Timeline(new KeyFrame(Duration.millis(dropInterval), e -> {
-            moveDown();
-            drawAll();
-        }));
-        gameLoop.setCycleCount(Timeline.INDEFINITE);
-        gameLoop.play();
+        //gravity, the drop speed is just a number in the engine
+        engine.tick();
+        checkGameOver();
     }
     
     private void showAlert(String message) { //used for when using alerts
@@ -347,200 +416,158 @@ public class Tetris extends Application {
     	//using KeyCode, setup all controls
     	//on key pressed
         gameScene.setOnKeyPressed(e -> {
-            if (e.getCode() == KeyCode.LEFT) {
-            	leftPressed = true;
-            } else if (e.getCode() == KeyCode.RIGHT) {
-            	rightPressed = true;
-            } else if (e.getCode() == KeyCode.DOWN) {
-            	downPressed = true;
-            } else if (e.getCode() == KeyCode.UP) {
-            	rotatePressed = true;
-            } else if (e.getCode() == KeyCode.Z && canHold) {
-            	holdPiece();
+            Action action = actionFor(e.getCode());
+            if (action != null) {
+            	controls.keyEvent(action, true); //done on the tick it happened in
+            } else if (e.getCode() == KeyCode.B) {
+            	autopilot = !autopilot; //toggle the bot
+            } else if (e.getCode() == KeyCode.F3) {
+            	metricsOverlay.setVisible(!metricsOverlay.isVisible()); //toggle the performance overlay
+            	lastOverlayTime = 0;
             }
         });
 
-        //on key released (only for movement)
+        //on key released (stops the autorepeat)
         gameScene.setOnKeyReleased(e -> {
-            if (e.getCode() == KeyCode.LEFT) {
-            	leftPressed = false;
-            } else if (e.getCode() == KeyCode.RIGHT) {
-            	rightPressed = false;
-            } else if (e.getCode() == KeyCode.DOWN) {
-            	downPressed = false;
-            } else if (e.getCode() == KeyCode.UP) {
-            	rotatePressed = false;
+            Action action = actionFor(e.getCode());
+            if (action != null) {
+            	controls.keyEvent(action, false);
             }
         });
     }
 
-    private void move(int dx) { //move current tetromino left/right
-    	//if current tetromino can move left/right
-        if (current.canMove(grid, dx, 0)) {
-        	//move it left/right
-        	current.move(dx, 0);
+    private static Action actionFor(KeyCode code) { //key bindings
+        switch (code) {
+            case LEFT: return Action.LEFT;
+            case RIGHT: return Action.RIGHT;
+            case DOWN: return Action.DOWN;
+            case UP: return Action.ROTATE;
+            case Z: return Action.HOLD;
+            case SPACE: return Action.HARD_DROP;
+            default: return null;
         }
     }
 
-    private void moveDown() { //move down current tetromino
-        if (current.canMove(grid, 0, 1)) { //if current tetromino can move down
-        	//move it down
-            current.move(0, 1);
-        } else {
-        	//lock it in place in the grid
-            current.merge(grid);
-            //clear line method
-            clearLines();
-            //get a new current tetromino from the array list queue
-            current = new Tetromino(nextQueue.poll());
-            //add a new tetromino to the queue
-            nextQueue.add((int) (Math.random() * 7));
-            //reset the hold restriction
-            canHold = true;
-
-            //if current tetromino cant move down and its at the top (cant move left or right) -> game over
-            if (!current.canMove(grid, 0, 0)) {
-            	//if the current score is higher than the old hgihscore
-                if (score > highScore) {
-                	//create a new highscore (for next game when restarted)
-                    highScore = score;
-                    //save high score to file
-                    HighScoreHandler.saveHighScore(highScore);
-                }
-                //game over label
-                gameOverLabel.setText("Game Over!\nFinal Score: " + score + "\nHigh Score: " + highScore);
-                
-                //stop the game to prevent bugs
-                gameLoop.stop();
-                inputLoop.stop();
-                mainStage.setScene(gameOverScene);
-            }
-        }
+    private void update(Action action) { //send an input to the engine
+        engine.step(action);
+        checkGameOver();
     }
 
-    private void rotate() { //rotate method
-        current.rotate(grid);
-    }
-
-    private void holdPiece() { //hold method
-        if (!canHold) { //if you cant hold
-        	return; //end
+    private void checkGameOver() { //react to the engine after every input and tick
+        if (playing && engine.isGameOver()) { //only handled once (more inputs can come in the same tick)
+            endGame();
         }
-        
-        if (hold == null) { //no tetromino in hold spot
-        	//put the tetromino in the hold spot
-            hold = new Tetromino(current.type);
-            //get a new current tetromino from the array list queue
-            current = new Tetromino(nextQueue.poll());
-            //add a new tetromino to the queue
-            nextQueue.add((int) (Math.random() * 7));
-        } else {
-        	//swap out the tetromino
-            Tetromino temp = hold;
-            //put the tetromino in the hold spot
-            hold = new Tetromino(current.type);
-            //change the current tetromino to the hold one
-            current = new Tetromino(temp.type);
-        }
-        //remove hold capability to prevent hold spamming
-        canHold = false;
     }
 
-    private void clearLines() { //method for clearing lines
-    	//reset line cleared to false
-        boolean lineCleared = false;
-        for (int y = ROWS - 1; y >= 0; y--) { //check the row
-        	
-        	//assume full
-            boolean full = true;
-            
-            for (int x = 0; x < COLUMNS; x++) {//check in each column
-                if (grid[y][x] == 0) { //if there is empty space
-                	//change to false
-                    full = false;
-                    //break
-                    break;
-                }
-            }
-            
-            if (full) { //if it remained full
-                for (int r = y; r > 0; r--) {
-                	//copy all the above lines and moves them down one
-                	//arraycopy is highly efficient and very easy to implement with my current code
-                    System.arraycopy(grid[r - 1], 0, grid[r], 0, COLUMNS);
-                }
-                y++; //check the row again after the sift
-                
-                //increase the score
-                score += 100;
-                lineCleared = true;
-            }
+    private void endGame() { //game over
+    	playing = false;
+    	int score = engine.getScore();
+    	
+    	//save the replay of this game
+    	Replay replay = recorder.finish(engine);
+    	String replayId = ReplayHandler.replayId(replay);
+    	persistence.saveReplay(replay, replayId, null);
+    	exportMetrics(); //numbers for the whole game
+    	
+    	//every game goes on the leaderboard log
+    	long now = System.currentTimeMillis();
+    	ScoreRecord record = new ScoreRecord(PLAYER_NAME, score, engine.getLines(), now - gameStartTime, now, replayId);
+    	//if the current score is higher than the old hgihscore
+        if (score > highScore) {
+        	//create a new highscore (for next game when restarted)
+            highScore = score;
         }
         
-        //if line was cleared -> speed up the drop speed
-        if (lineCleared) {
-            speedUpDrop();
-        }
-    }
-
-    private void speedUpDrop() { //method to speed up the drop speed
-        if (dropInterval > minDropInterval) {
-            dropInterval -= dropAcceleration;  // decrease delay to speed up
-            if (dropInterval < minDropInterval) {
-                dropInterval = minDropInterval;  // clamp to minimum speed
-            }
-            startGameLoop(); // restart game loop with new speed
-        }
-    }
-
-
-    private void drawAll() { //draw method for graphics context
-    	//main canvas
-        drawBoard();
+        //game over label, the top 5 is added once the score is saved
+        String text = "Game Over!\nFinal Score: " + score + "\nHigh Score: " + highScore + "\n";
+        gameOverLabel.setText(text);
+        persistence.saveScore(record, madeTop -> {
+        	StringBuilder top = new StringBuilder(text);
+        	int rank = 1;
+        	for (ScoreRecord r : HighScoreHandler.getTopScores()) { //already in memory
+        		if (rank > 5) {
+        			break;
+        		}
+        		top.append("\n").append(rank++).append(". ").append(r.player).append("  ").append(r.score);
+        	}
+        	gameOverLabel.setText(top.toString());
+        });
         
-        //mini is the side bar
-        drawMini(holdGC, hold);
-        drawMini(nextGC, new Tetromino(nextQueue.peek()));
-        scoreLabel.setText("Score: " + score);
-        highScoreLabel.setText("High Score: " + highScore);
+        //stop the game to prevent bugs
+        gameLoop.stop();
+        mainStage.setScene(gameOverScene);
     }
 
-    private void drawBoard() { //method to draw main board
-    	//background
-    	for (int y = 0; y < ROWS; y++) {
-    	    for (int x = 0; x < COLUMNS; x++) {
-    	        boardGC.drawImage(backgroundTile, x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
-    	    }
+    private void drawAll(double alpha) { //draw method for graphics context (alpha = how far into the next tick)
+    	//the falling piece slides down smoothly between gravity drops instead of jumping a row
+    	Tetromino current = engine.getCurrent();
+    	double fall = 0;
+    	if (current.canMove(engine.getBoard(), 0, 1)) {
+    		double progress = engine.getDropProgress() + alpha * GameEngine.TICK_MS / engine.getDropInterval();
+    		fall = Math.floor(Math.min(1, progress) * (TILE_SIZE - 1)); //whole pixels, never a full row
     	}
+    	
+    	//main canvas (cached stack + the falling piece, nothing if neither changed)
+        boardRenderer.draw(engine.getBoard(), current, fall);
         
-        //check row and column in the grid
-        for (int y = 0; y < ROWS; y++) {
-            for (int x = 0; x < COLUMNS; x++) {
-                if (grid[y][x] != 0) { //if the cell is not 0 then that means a block is there
-                    boardGC.drawImage(blockImages[grid[y][x] - 1], x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
-                }
-            }
+        //mini is the side bar, only redrawn when the piece in it changes
+        Tetromino hold = engine.getHold();
+        int holdType = hold == null ? -1 : hold.type;
+        if (holdType != shownHold) {
+        	drawMini(holdGC, holdType);
+        	shownHold = holdType;
+        }
+        int nextType = engine.peekNext();
+        if (nextType != shownNext) {
+        	drawMini(nextGC, nextType);
+        	shownNext = nextType;
+        }
+        
+        //labels only change when the numbers do
+        if (engine.getScore() != shownScore) {
+        	shownScore = engine.getScore();
+        	scoreLabel.setText("Score: " + shownScore);
         }
-        for (Point p : current.blocks) { //draw the current falling tetromino
-            boardGC.drawImage(blockImages[current.type], p.x * TILE_SIZE, p.y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+        if (highScore != shownHighScore) {
+        	shownHighScore = highScore;
+        	highScoreLabel.setText("High Score: " + shownHighScore);
         }
     }
 
-    private void drawMini(GraphicsContext gc, Tetromino t) { // draw the hold and next tetrominos
+    private void invalidateDrawing() { //make the next drawAll repaint everything
+    	boardRenderer.invalidate();
+    	shownHold = shownNext = shownScore = shownHighScore = -1;
+    }
+
+    private void drawMini(GraphicsContext gc, int type) { // draw the hold and next tetrominos
     	//black background
         gc.setFill(Color.BLACK);
         gc.fillRect(0, 0, 4 * TILE_SIZE, 4 * TILE_SIZE);
-        if (t == null) { //if there is no tetromino then end method
+        if (type < 0) { //if there is no tetromino then end method
         	return;
         }
         
-        for (Point p : t.blocks) { //draw and positions the tetromino in a 4x4 mini grid
-            int localX = p.x - 3;
-            int localY = p.y;
-            gc.drawImage(blockImages[t.type], localX * TILE_SIZE, localY * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+        miniPiece.type = type; //reuse one tetromino in its spawn position
+        miniPiece.setPose(0, Tetromino.spawnX(type), Tetromino.spawnY(type));
+        for (int i = 0; i < 4; i++) { //draw and positions the tetromino in a 4x4 mini grid
+            int localX = miniPiece.getBlockX(i) - 3;
+            int localY = miniPiece.getBlockY(i);
+            atlas.drawTile(gc, type + 1, localX * TILE_SIZE, localY * TILE_SIZE);
         }
     }
 
+    private void exit() { //finish writing scores and replays then quit
+    	exportMetrics();
+    	persistence.shutdown(5000);
+    	System.exit(0);
+    }
+
+    @Override
+    public void stop() { //window closed
+    	exportMetrics();
+    	persistence.shutdown(5000);
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
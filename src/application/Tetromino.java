@@ -3,35 +3,41 @@ package application;
  * ICS4U RST Final Project
  * Tetromino.java
  * @author V. Aiden
- * 
+ *
  * WHAT IS A TETROMINO?:
  * Tetrominos are 4 blocks shapes connected together
  * there are 7 possibilities: O, I, J, L, S, Z, T
- * 
+ *
  * Tetromino object that handles all things tetrominos, the class does not use vectors but uses
  * various concepts from vectors
- * 
+ *
+ * a tetromino is just (type, rotation, x, y) where x and y is the position of the pivot block,
+ * all 4 rotations of all 7 shapes are worked out once in static tables so moving and rotating
+ * never creates new objects
+ *
  * CLASS SUMMARY:
  * All 7 shapes
  * Offsets for all shapes (for wall kicks)
+ * Rotation tables (block offsets and row masks for every rotation)
  * Movement check verify
+ * Drop distance (hard drop and ghost)
  * Movement of tetrominos
  * Merging of grid
  * Rotations
- * 
+ *
  */
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 public class Tetromino { //tetris blocks are called tetrominos
-	//the 4 block positions, since every tetromino is made of 4 blocks
-    public List<Point> blocks = new ArrayList<>();
     //tetromino type
     public int type;
+    //rotation index (0-3, clockwise) and position of the pivot block
+    private int rotation;
+    private int x, y;
     //initial offsets when spawned in
-    private int xOffset = 3;
-    private int yOffset = 0;
+    private static final int X_OFFSET = 3;
+    private static final int Y_OFFSET = 0;
 
     private static final int[][][] SHAPES = { //3D array of each shape
             // O
@@ -59,6 +65,62 @@ public class Tetromino { //tetris blocks are called tetrominos
         {2, 0}    // right 2
     };
 
+    //rotation tables, indexed [type][rotation]
+    private static final int[][][] BLOCK_X = new int[7][4][4]; //block x offsets from the pivot
+    private static final int[][][] BLOCK_Y = new int[7][4][4]; //block y offsets from the pivot
+    private static final int[][][] ROW_MASKS = new int[7][4][]; //one bitmask per row the piece covers (top to bottom)
+    private static final int[][] MIN_X = new int[7][4]; //left most block offset
+    private static final int[][] MIN_Y = new int[7][4]; //top most block offset
+    private static final int[][] WIDTH = new int[7][4]; //amount of columns the piece covers
+    private static final int[][][] BOTTOM = new int[7][4][]; //lowest block offset in each column (left to right)
+
+    static { //build the tables once
+        for (int t = 0; t < SHAPES.length; t++) {
+        	//the pivot is the second block, all offsets are relative to it
+            int[] pivot = SHAPES[t][1];
+            for (int i = 0; i < 4; i++) {
+                BLOCK_X[t][0][i] = SHAPES[t][i][0] - pivot[0];
+                BLOCK_Y[t][0][i] = SHAPES[t][i][1] - pivot[1];
+            }
+
+            for (int r = 0; r < 4; r++) {
+                if (r > 0) {
+                	//90 degree rotations clockwise: (x, y) -> (-y, x)
+                    for (int i = 0; i < 4; i++) {
+                        BLOCK_X[t][r][i] = -BLOCK_Y[t][r - 1][i];
+                        BLOCK_Y[t][r][i] = BLOCK_X[t][r - 1][i];
+                    }
+                }
+
+                //bounding box of this rotation
+                int minX = 0, maxX = 0, minY = 0, maxY = 0;
+                for (int i = 0; i < 4; i++) {
+                    minX = Math.min(minX, BLOCK_X[t][r][i]);
+                    maxX = Math.max(maxX, BLOCK_X[t][r][i]);
+                    minY = Math.min(minY, BLOCK_Y[t][r][i]);
+                    maxY = Math.max(maxY, BLOCK_Y[t][r][i]);
+                }
+                MIN_X[t][r] = minX;
+                MIN_Y[t][r] = minY;
+                WIDTH[t][r] = maxX - minX + 1;
+
+                //row masks with the left most column at bit 0
+                ROW_MASKS[t][r] = new int[maxY - minY + 1];
+                for (int i = 0; i < 4; i++) {
+                    ROW_MASKS[t][r][BLOCK_Y[t][r][i] - minY] |= 1 << (BLOCK_X[t][r][i] - minX);
+                }
+
+                //bottom profile (every column of a tetromino has a block)
+                BOTTOM[t][r] = new int[WIDTH[t][r]];
+                Arrays.fill(BOTTOM[t][r], Integer.MIN_VALUE);
+                for (int i = 0; i < 4; i++) {
+                    int c = BLOCK_X[t][r][i] - minX;
+                    BOTTOM[t][r][c] = Math.max(BOTTOM[t][r][c], BLOCK_Y[t][r][i]);
+                }
+            }
+        }
+    }
+
     /**
      * constructor for tetromino
      *
@@ -66,39 +128,211 @@ public class Tetromino { //tetris blocks are called tetrominos
      */
     public Tetromino(int type) {
         this.type = type;
-        for (int[] coord : SHAPES[type]) {
-        	//offset used to center the blocks 
-            blocks.add(new Point(coord[0] + xOffset, coord[1] + yOffset));
-        }
+        //offset used to center the blocks
+        this.rotation = 0;
+        this.x = spawnX(type);
+        this.y = spawnY(type);
     }
 
     /**
-     * method for checking if the tetromino is able to move given an x and y
+     * constructor for a copy of another tetromino
      *
-     * @param grid
-     * @param left and right movement (delta x: change in x)
-     * @param downward movement (delta y: change in y)
+     * @param tetromino to copy
+     */
+    public Tetromino(Tetromino other) {
+        this.type = other.type;
+        this.rotation = other.rotation;
+        this.x = other.x;
+        this.y = other.y;
+    }
+
+    /**
+     * method for the pivot x a tetromino type spawns at
+     *
+     * @param type
+     * @return column
+     */
+    public static int spawnX(int type) {
+        return SHAPES[type][1][0] + X_OFFSET;
+    }
+
+    /**
+     * method for the pivot y a tetromino type spawns at
+     *
+     * @param type
+     * @return row
+     */
+    public static int spawnY(int type) {
+        return SHAPES[type][1][1] + Y_OFFSET;
+    }
+
+    /**
+     * method for putting the tetromino in any rotation and position (used by the AI search)
+     *
+     * @param rotation index
+     * @param pivot x
+     * @param pivot y
+     */
+    public void setPose(int rotation, int x, int y) {
+        this.rotation = rotation;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * method for getting the x position of one of the 4 blocks
+     *
+     * @param block index (0-3)
+     * @return column of the block
+     */
+    public int getBlockX(int i) {
+        return x + BLOCK_X[type][rotation][i];
+    }
+
+    /**
+     * method for getting the y position of one of the 4 blocks
+     *
+     * @param block index (0-3)
+     * @return row of the block
+     */
+    public int getBlockY(int i) {
+        return y + BLOCK_Y[type][rotation][i];
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * method for the highest row the tetromino covers
+     *
+     * @return row
+     */
+    public int getTopRow() {
+        return y + MIN_Y[type][rotation];
+    }
+
+    /**
+     * method for the lowest row the tetromino covers
+     *
+     * @return row
+     */
+    public int getBottomRow() {
+        return y + MIN_Y[type][rotation] + ROW_MASKS[type][rotation].length - 1;
+    }
+
+    /**
+     * method for the blocks the tetromino covers in one row
+     *
+     * @param row (getTopRow() to getBottomRow())
+     * @return bitmask with bit x set for column x (like Board.getRow)
+     */
+    public int getRowMask(int row) {
+        return ROW_MASKS[type][rotation][row - getTopRow()] << (x + MIN_X[type][rotation]);
+    }
+
+    /**
+     * method for checking if the tetromino fits on the board in a given rotation and position
+     * uses the row masks so it is one AND per row the piece covers
+     *
+     * @param board (game board)
+     * @param rotation index
+     * @param pivot x
+     * @param pivot y
      * @return true or false
      */
-    public boolean canMove(int[][] grid, int dx, int dy) {
-        for (Point p : blocks) { //check each point in the tetromino
-        	//temporary coords
-            int newX = p.x + dx;
-            int newY = p.y + dy;
-            
-            //check if its on the edge/wall
-            if (newX < 0 || newX >= grid[0].length || newY < 0 || newY >= grid.length) {
-                return false;
-            }
-            
-            //check if it collides with other blocks
-            if (grid[newY][newX] != 0) {
+    public boolean fits(Board board, int rot, int px, int py) {
+        int left = px + MIN_X[type][rot];
+        int top = py + MIN_Y[type][rot];
+        int[] masks = ROW_MASKS[type][rot];
+
+        //check if its on the edge/wall
+        if (left < 0 || left + WIDTH[type][rot] > Board.COLUMNS || top < 0 || top + masks.length > Board.ROWS) {
+            return false;
+        }
+
+        //check if it collides with other blocks
+        for (int k = 0; k < masks.length; k++) {
+            if ((board.getRow(top + k) & (masks[k] << left)) != 0) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * method for how many rows the tetromino can fall before it lands
+     * 
+     * each bottom block is compared with the top of its column, that is exact unless the piece is
+     * tucked under an overhang (a bottom block below its column's top), then it steps down the slow way
+     *
+     * @param board (game board)
+     * @return rows it can move down (0 if it is already resting on something)
+     */
+    public int dropDistance(Board board) {
+        int left = x + MIN_X[type][rotation];
+        int[] bottom = BOTTOM[type][rotation];
+        int distance = Board.ROWS;
+        for (int c = 0; c < bottom.length; c++) {
+            int gap = board.getColumnTop(left + c) - 1 - (y + bottom[c]);
+            if (gap < 0) { //under an overhang
+                int d = 0;
+                while (fits(board, rotation, x, y + d + 1)) {
+                    d++;
+                }
+                return d;
+            }
+            distance = Math.min(distance, gap);
+        }
+        return distance;
+    }
+
+    /**
+     * method for the pivot row the tetromino would land on (where the ghost piece is drawn)
+     *
+     * @param board (game board)
+     * @return row
+     */
+    public int landingY(Board board) {
+        return y + dropDistance(board);
+    }
+
+    /**
+     * method for a key that is the same for every pose that covers the same cells
+     * (an I piece has 2 rotations that look identical, S and Z too), packs the top row and 4 row masks
+     *
+     * @return placement key
+     */
+    public long placementKey() {
+        int left = x + MIN_X[type][rotation];
+        int[] masks = ROW_MASKS[type][rotation];
+        long key = y + MIN_Y[type][rotation];
+        for (int k = 0; k < 4; k++) {
+            key = (key << Board.COLUMNS) | (k < masks.length ? masks[k] << left : 0);
+        }
+        return key;
+    }
+
+    /**
+     * method for checking if the tetromino is able to move given an x and y
+     *
+     * @param board (game board)
+     * @param left and right movement (delta x: change in x)
+     * @param downward movement (delta y: change in y)
+     * @return true or false
+     */
+    public boolean canMove(Board board, int dx, int dy) {
+        return fits(board, rotation, x + dx, y + dy);
+    }
+
     /**
      * method for actually moving the tetromino
      *
@@ -106,64 +340,43 @@ public class Tetromino { //tetris blocks are called tetrominos
      * @param downward movement (delta y: change in y)
      */
     public void move(int dx, int dy) {
-        for (Point p : blocks) {
-            p.x += dx;
-            p.y += dy;
-        }
+        x += dx;
+        y += dy;
     }
 
     /**
      * method for locking the tetromino to the grid
      *
-     * @param grid (game board)
+     * @param board (game board)
      */
-    public void merge(int[][] grid) {
-        for (Point p : blocks) {
-            grid[p.y][p.x] = type + 1; //change the grid to have +1 to indicated its occupied and match image index
+    public void merge(Board board) {
+        for (int i = 0; i < 4; i++) {
+            board.setCell(getBlockX(i), getBlockY(i), type + 1); //+1 to indicate its occupied and match image index
         }
     }
 
     /**
      * method for rotating the tetromino block
      *
-     * @param grid (game board)
+     * @param board (game board)
      */
-    public void rotate(int[][] grid) {
+    public void rotate(Board board) {
         if (type == 0) {
         	return; //O block doesn't rotate
         }
 
-        Point pivot = blocks.get(1); //pivot block (usually second block)
+        int next = (rotation + 1) & 3; //next rotation clockwise
 
         //loops and tries out each wall kick for a valid one
         for (int[] offset : WALL_KICKS) {
-            List<Point> rotated = new ArrayList<>();
-            for (Point p : blocks) {
-            	//moves the block tot he origin that is relative to the pivot
-                int relX = p.x - pivot.x;
-                int relY = p.y - pivot.y;
-                
-                //90 degree rotations clockwise: (x, y) -> (-y, x)
-                int newX = pivot.x - relY + offset[0];
-                int newY = pivot.y + relX + offset[1];
-                rotated.add(new Point(newX, newY));
-            }
-
             //Check if rotated tetromino is within bounds and doesn't collide
-            boolean canRotateHere = true;
-            for (Point p : rotated) {
-                if (p.x < 0 || p.x >= grid[0].length || p.y < 0 || p.y >= grid.length || grid[p.y][p.x] != 0) {
-                    canRotateHere = false;
-                    break;
-                }
-            }
-            
-            //If a valid rotated position is found, update the blocks and exit
-            if (canRotateHere) {
-                blocks = rotated;
+            if (fits(board, next, x + offset[0], y + offset[1])) {
+                rotation = next;
+                x += offset[0];
+                y += offset[1];
                 return; //rotation + kick successful
             }
         }
         //rotation failed with all kicks, do nothing
     }
-}
\ No newline at end of file
+}
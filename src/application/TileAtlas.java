@@ -0,0 +1,146 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * TileAtlas.java
+ * @author V. Aiden
+ *
+ * TileAtlas puts every tile image in one image, already scaled to the tile size
+ *
+ * the tile pngs are 16x16 and were getting scaled to TILE_SIZE on every single draw,
+ * now they are scaled once (bilinear, like the canvas did) when the game starts and every draw
+ * after that is a 1:1 copy out of the atlas
+ *
+ * tile 0 is the background and tiles 1-7 are tetromino type + 1 (same numbers as Board.getCell),
+ * tiles 8-14 are the same blocks faded for the ghost piece (GHOST + type),
+ * the block tiles are already drawn on top of the background so a tile can be written
+ * straight into another image with no blending
+ */
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+
+public class TileAtlas {
+    public static final int TILES = 15; //background + 7 tetrominos + 7 ghosts
+    public static final int GHOST = 8; //tile of the ghost of tetromino type 0
+    private static final int GHOST_ALPHA = 80; //out of 255
+
+    private final int tileSize;
+    private final int[][] pixels = new int[TILES][]; //ARGB pixels of every tile
+    private final WritableImage image; //all tiles in one row
+
+    /**
+     * constructor for tile atlas
+     *
+     * @param background tile
+     * @param block images (indexed by tetromino type)
+     * @param tile size (pixels)
+     */
+    public TileAtlas(Image background, Image[] blockImages, int tileSize) {
+        this.tileSize = tileSize;
+        pixels[0] = scale(background, tileSize);
+        for (int t = 0; t < blockImages.length; t++) {
+            int[] block = scale(blockImages[t], tileSize);
+            int[] ghost = new int[block.length];
+            for (int i = 0; i < block.length; i++) { //draw the block on top of the background
+                int faded = (block[i] >>> 24) * GHOST_ALPHA / 0xFF << 24 | (block[i] & 0xFFFFFF);
+                ghost[i] = over(faded, pixels[0][i]);
+                block[i] = over(block[i], pixels[0][i]);
+            }
+            pixels[t + 1] = block;
+            pixels[GHOST + t] = ghost;
+        }
+
+        image = new WritableImage(TILES * tileSize, tileSize);
+        PixelWriter writer = image.getPixelWriter();
+        for (int t = 0; t < TILES; t++) {
+            writeTile(writer, t, t * tileSize, 0);
+        }
+    }
+
+    /**
+     * method for drawing one tile on a canvas
+     *
+     * @param graphics context
+     * @param tile (0 = background, 1-7 = tetromino type + 1, GHOST + type)
+     * @param x (pixels)
+     * @param y (pixels)
+     */
+    public void drawTile(GraphicsContext gc, int tile, double x, double y) {
+        gc.drawImage(image, tile * tileSize, 0, tileSize, tileSize, x, y, tileSize, tileSize);
+    }
+
+    /**
+     * method for copying one tile into a writable image
+     *
+     * @param pixel writer of the image
+     * @param tile (0 = background, 1-7 = tetromino type + 1, GHOST + type)
+     * @param x (pixels)
+     * @param y (pixels)
+     */
+    public void writeTile(PixelWriter writer, int tile, int x, int y) {
+        writer.setPixels(x, y, tileSize, tileSize, PixelFormat.getIntArgbInstance(), pixels[tile], 0, tileSize);
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public Image getImage() {
+        return image;
+    }
+
+    //reads an image and scales it to size x size with bilinear filtering
+    private static int[] scale(Image source, int size) {
+        int w = (int) source.getWidth();
+        int h = (int) source.getHeight();
+        int[] src = new int[w * h];
+        PixelReader reader = source.getPixelReader();
+        reader.getPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), src, 0, w);
+
+        int[] dst = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            //center of the pixel in source coordinates
+            double sy = Math.max(0, (y + 0.5) * h / size - 0.5);
+            int y0 = Math.min((int) sy, h - 1);
+            int y1 = Math.min(y0 + 1, h - 1);
+            double fy = sy - y0;
+            for (int x = 0; x < size; x++) {
+                double sx = Math.max(0, (x + 0.5) * w / size - 0.5);
+                int x0 = Math.min((int) sx, w - 1);
+                int x1 = Math.min(x0 + 1, w - 1);
+                double fx = sx - x0;
+
+                int argb = 0;
+                for (int shift = 0; shift < 32; shift += 8) { //each channel on its own
+                    double top = channel(src[y0 * w + x0], shift) * (1 - fx) + channel(src[y0 * w + x1], shift) * fx;
+                    double bottom = channel(src[y1 * w + x0], shift) * (1 - fx) + channel(src[y1 * w + x1], shift) * fx;
+                    argb |= (int) Math.round(top * (1 - fy) + bottom * fy) << shift;
+                }
+                dst[y * size + x] = argb;
+            }
+        }
+        return dst;
+    }
+
+    private static int channel(int argb, int shift) {
+        return (argb >>> shift) & 0xFF;
+    }
+
+    //alpha blends a pixel on top of an opaque one
+    private static int over(int top, int bottom) {
+        int alpha = top >>> 24;
+        if (alpha == 0xFF) {
+            return top;
+        }
+        int argb = 0xFF000000;
+        for (int shift = 0; shift < 24; shift += 8) {
+            int c = (channel(top, shift) * alpha + channel(bottom, shift) * (0xFF - alpha) + 127) / 0xFF;
+            argb |= c << shift;
+        }
+        return argb;
+    }
+}
@@ -0,0 +1,260 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * TournamentRunner.java
+ * @author V. Aiden
+ * 
+ * TournamentRunner plays lots of seeded headless games in parallel and reports
+ * score, lines cleared and game length histograms plus games per second
+ * 
+ * the games are split up with fork-join, every task plays its games on its own engines
+ * and fills its own histograms, the results are only merged when tasks join (no shared locks)
+ * 
+ * difficulty settings matter headless because the player only gets one input every actionDelay ms
+ * of game time (rounded to whole ticks), so faster drops = fewer moves per piece
+ * 
+ * usage: TournamentRunner [--games N] [--threads N] [--seed N] [--player random|bot] [--mode uniform|bag]
+ *                         [--depth N] [--beam N] [--table BITS]
+ *                         [--accel MS] [--min-interval MS] [--action-delay MS] [--max-ticks N]
+ */
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongFunction;
+
+import simpleIO.Console;
+
+public class TournamentRunner {
+	//settings (defaults match the real game)
+    private int games = 10_000;
+    private long seed = 1;
+    private double dropAcceleration = 50;
+    private double minDropInterval = 100;
+    private double actionDelay = 50; //ms per player input
+    private long maxTicks = 1_000_000; //stop games that would go on forever (10000 s of game time)
+    private PieceGenerator.Mode mode = PieceGenerator.Mode.UNIFORM;
+    private LongFunction<Player> players = RandomPlayer::new; //makes a player from a seed
+
+    /**
+     * results of a tournament, histograms are merged from every worker
+     */
+    public static class Result {
+        public final Histogram scores = new Histogram(100, 1000);
+        public final Histogram lines = new Histogram(1, 1000);
+        public final Histogram seconds = new Histogram(5, 1000); //game length
+        public long games = 0;
+        public long elapsedNanos = 0;
+
+        private void record(GameEngine engine) {
+            scores.record(engine.getScore());
+            lines.record(engine.getLines());
+            seconds.record(engine.getTicks() / GameEngine.TICKS_PER_SECOND);
+            games++;
+        }
+
+        private Result merge(Result other) {
+            scores.merge(other.scores);
+            lines.merge(other.lines);
+            seconds.merge(other.seconds);
+            games += other.games;
+            return this;
+        }
+
+        public double gamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+        }
+    }
+
+    /**
+     * fork-join task that plays the games with index from (inclusive) to to (exclusive)
+     */
+    private class GamesTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+        private final int from, to, threshold;
+
+        GamesTask(int from, int to, int threshold) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from <= threshold) { //small enough -> just play them
+                Result result = new Result();
+                for (int i = from; i < to; i++) {
+                    long gameSeed = gameSeed(seed, i);
+                    GameEngine engine = new GameEngine(gameSeed, mode);
+                    engine.setDropAcceleration(dropAcceleration);
+                    engine.setMinDropInterval(minDropInterval);
+                    play(engine, players.apply(~gameSeed), actionDelay, maxTicks);
+                    result.record(engine);
+                }
+                return result;
+            }
+
+            //split in half, play one half here and the other half on another worker
+            int mid = (from + to) >>> 1;
+            GamesTask left = new GamesTask(from, mid, threshold);
+            left.fork();
+            Result right = new GamesTask(mid, to, threshold).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * method for playing one game until game over (or maxTicks)
+     *
+     * @param engine (new game)
+     * @param player
+     * @param ms each input takes
+     * @param max ticks
+     */
+    public static void play(GameEngine engine, Player player, double actionDelay, long maxTicks) {
+        int actionTicks = Math.max(1, (int) Math.round(actionDelay / GameEngine.TICK_MS)); //ticks between inputs
+        boolean waiting = false; //player asked to wait for the next gravity drop
+        while (!engine.isGameOver() && engine.getTicks() < maxTicks) {
+            if (!waiting && engine.getTicks() % actionTicks == 0) {
+                Action action = player.nextAction(engine);
+                if (action == null) { //player is waiting for gravity
+                	waiting = true;
+                } else {
+                	engine.step(action);
+                }
+            }
+            double progress = engine.getDropProgress();
+            engine.tick();
+            if (engine.getDropProgress() < progress) { //the drop timer wrapped -> gravity dropped the piece
+            	waiting = false;
+            }
+        }
+    }
+
+    /**
+     * method for getting the seed of a game, mixed so neighbouring games aren't related (splitmix64)
+     *
+     * @param tournament seed
+     * @param game index
+     * @return game seed
+     */
+    public static long gameSeed(long seed, long index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * method for running the tournament
+     *
+     * @param pool to run the games on
+     * @return merged results
+     */
+    public Result run(ForkJoinPool pool) {
+    	//about 8 tasks per thread so fast workers can steal from slow ones
+        int threshold = Math.max(1, games / (pool.getParallelism() * 8));
+        long start = System.nanoTime();
+        Result result = pool.invoke(new GamesTask(0, games, threshold));
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    public void setGames(int games) {
+        this.games = games;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setDropAcceleration(double dropAcceleration) {
+        this.dropAcceleration = dropAcceleration;
+    }
+
+    public void setMinDropInterval(double minDropInterval) {
+        this.minDropInterval = minDropInterval;
+    }
+
+    public void setActionDelay(double actionDelay) {
+        this.actionDelay = actionDelay;
+    }
+
+    public void setMaxTicks(long maxTicks) {
+        this.maxTicks = maxTicks;
+    }
+
+    public void setMode(PieceGenerator.Mode mode) {
+        this.mode = mode;
+    }
+
+    public void setPlayers(LongFunction<Player> players) {
+        this.players = players;
+    }
+
+    /**
+     * method for making a player factory from its name
+     *
+     * @param name of the player
+     * @param lookahead depth (bots only)
+     * @param beam width (bots only)
+     * @param table shared by every bot (null = none)
+     * @return factory that makes a player from a seed
+     */
+    static LongFunction<Player> playerByName(String name, int depth, int beamWidth, TranspositionTable table) {
+        if (name.equals("random")) {
+            return RandomPlayer::new;
+        }
+        if (name.equals("bot")) { //games are already spread over the cores so bots search on their own thread
+            return seed -> new Bot(new Heuristic(), depth, beamWidth, null, table);
+        }
+        throw new IllegalArgumentException("Unknown player: " + name);
+    }
+
+    public static void main(String[] args) {
+        TournamentRunner runner = new TournamentRunner();
+        int threads = Runtime.getRuntime().availableProcessors();
+        String playerName = "random";
+        int depth = 1, beamWidth = 8;
+        TranspositionTable table = null;
+
+        //read the options
+        Map<String, String> options = Options.parse(args, 0, "--games", "--threads", "--seed", "--player", "--depth",
+                "--beam", "--table", "--mode", "--accel", "--min-interval", "--action-delay", "--max-ticks");
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String value = option.getValue();
+            switch (option.getKey()) { //unknown options were already rejected
+                case "--games": runner.setGames(Integer.parseInt(value)); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--seed": runner.setSeed(Long.parseLong(value)); break;
+                case "--player": playerName = value; break;
+                case "--depth": depth = Integer.parseInt(value); break;
+                case "--beam": beamWidth = Integer.parseInt(value); break;
+                case "--table": table = new TranspositionTable(Integer.parseInt(value)); break;
+                case "--mode": runner.setMode(PieceGenerator.Mode.valueOf(value.toUpperCase())); break;
+                case "--accel": runner.setDropAcceleration(Double.parseDouble(value)); break;
+                case "--min-interval": runner.setMinDropInterval(Double.parseDouble(value)); break;
+                case "--action-delay": runner.setActionDelay(Double.parseDouble(value)); break;
+                case "--max-ticks": runner.setMaxTicks(Long.parseLong(value)); break;
+            }
+        }
+        runner.setPlayers(playerByName(playerName, depth, beamWidth, table));
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Result result = runner.run(pool);
+        pool.shutdown();
+
+        Console.print("Played " + result.games + " games (" + playerName + ") on " + threads + " threads in "
+                + String.format("%.2f", result.elapsedNanos / 1e9) + " s");
+        Console.print(String.format("Throughput: %.0f games/sec (%.0f per thread)", result.gamesPerSecond(), result.gamesPerSecond() / threads));
+        Console.print("Score:  " + result.scores.summary());
+        Console.print("Lines:  " + result.lines.summary());
+        Console.print("Length: " + result.seconds.summary() + " (seconds of game time)");
+        if (table != null) {
+            Console.print("Transposition table: " + table.stats());
+        }
+        Console.print();
+        Console.print("Lines cleared:");
+        Console.print(result.lines.chart(50));
+    }
+}
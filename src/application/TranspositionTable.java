@@ -0,0 +1,137 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * TranspositionTable.java
+ * @author V. Aiden
+ * 
+ * TranspositionTable remembers the search score of positions the AI has already searched,
+ * the same board can be reached by lots of different placements (and the next piece's search
+ * repeats most of the last one) so those are served from here instead of searched again
+ * 
+ * HOW IT WORKS:
+ * fixed size (never grows), made of 2-way buckets picked by the zobrist hash
+ * a new entry goes in the first slot and pushes the old first slot into the second slot,
+ * so the oldest of the 2 gets evicted
+ * 
+ * it is shared by every search thread without locks, each slot stores (key XOR data, data)
+ * so a slot that was half written by another thread just fails the check and counts as a miss
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+public class TranspositionTable {
+    private static final int LONGS_PER_SLOT = 2; //checked key + data
+    private static final int SLOTS_PER_BUCKET = 2;
+
+    private final long[] table;
+    private final int bucketMask;
+
+    //stats
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * constructor for transposition table
+     *
+     * @param bits (the table has 2^bits buckets)
+     */
+    public TranspositionTable(int bits) {
+        if (bits < 1 || bits > 26) {
+            throw new IllegalArgumentException("Table bits must be 1-26 but was " + bits);
+        }
+        int buckets = 1 << bits;
+        bucketMask = buckets - 1;
+        table = new long[buckets * SLOTS_PER_BUCKET * LONGS_PER_SLOT];
+    }
+
+    private int bucket(long key) { //index of the first long of the bucket
+        return ((int) (key >>> 32 ^ key) & bucketMask) * SLOTS_PER_BUCKET * LONGS_PER_SLOT;
+    }
+
+    /**
+     * method for looking up a score
+     *
+     * @param zobrist key
+     * @return the stored score, or NaN if it isn't stored
+     */
+    public double get(long key) {
+        int i = bucket(key);
+        for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++, i += LONGS_PER_SLOT) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key) {
+                hits.increment();
+                return Double.longBitsToDouble(data);
+            }
+        }
+        misses.increment();
+        return Double.NaN;
+    }
+
+    /**
+     * method for storing a score
+     *
+     * @param zobrist key
+     * @param score
+     */
+    public void put(long key, double score) {
+        int i = bucket(key);
+        long data = Double.doubleToRawLongBits(score);
+        stores.increment();
+
+        //same key already in the first slot -> just update it
+        if ((table[i] ^ table[i + 1]) == key) {
+            table[i] = key ^ data;
+            table[i + 1] = data;
+            return;
+        }
+        //move the first slot down (evicting the second) and put the new one first
+        table[i + 2] = table[i];
+        table[i + 3] = table[i + 1];
+        table[i] = key ^ data;
+        table[i + 1] = data;
+    }
+
+    /**
+     * method for forgetting everything (and the stats)
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        hits.reset();
+        misses.reset();
+        stores.reset();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * method for the memory the table uses
+     *
+     * @return bytes
+     */
+    public long getMemoryBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    /**
+     * method for a one line summary of the stats
+     *
+     * @return hit rate, lookups and memory
+     */
+    public String stats() {
+        return String.format("hit rate %.1f%% (%d hits / %d lookups, %d stores), %.1f MB",
+                getHitRate() * 100, getHits(), getHits() + getMisses(), stores.sum(), getMemoryBytes() / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,35 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * UniformGenerator.java
+ * @author V. Aiden
+ * 
+ * UniformGenerator picks every tetromino at random (same odds as the original Math.random() code)
+ */
+
+public class UniformGenerator implements PieceGenerator {
+    private final FastRandom random;
+
+    /**
+     * constructor for uniform generator
+     *
+     * @param seed
+     */
+    public UniformGenerator(long seed) {
+        random = new FastRandom(seed);
+    }
+
+    private UniformGenerator(UniformGenerator other) {
+        random = new FastRandom(other.random);
+    }
+
+    @Override
+    public PieceGenerator copy() {
+        return new UniformGenerator(this);
+    }
+
+    @Override
+    public int next() {
+        return random.nextInt(7);
+    }
+}
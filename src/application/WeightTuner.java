@@ -0,0 +1,366 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * WeightTuner.java
+ * @author V. Aiden
+ *
+ * WeightTuner evolves Heuristic weights with a genetic algorithm
+ *
+ * HOW IT WORKS:
+ * every generation each weight vector (individual) plays the same seeded games, its fitness is the
+ * average lines cleared, the next generation keeps the best few (elites) and fills up with children:
+ * two parents are picked by tournament, the child is their average weighted by fitness,
+ * sometimes one weight is nudged (mutation), and it is scaled to length 1 (only the direction of the
+ * weights changes which placement is best)
+ *
+ * the games are placement games: every piece goes straight to the placement the heuristic likes best
+ * (no gravity or inputs, just the real tetrominos, move generator and line clears), so a game
+ * only measures how good the weights are and not how fast the bot can move
+ *
+ * all games of a generation are one fork-join task tree so every core is busy, the seeds change
+ * every generation (the same for every individual so they are compared fairly)
+ *
+ * after every generation the population is saved to the checkpoint file (written to a temp file
+ * and renamed so a crash never leaves half a file), running again with the same file carries on
+ * from there, the random numbers of a generation only depend on the seed and the generation number
+ * so carrying on gives the same results as never stopping
+ *
+ * usage: WeightTuner [--population N] [--games N] [--pieces N] [--generations N] [--threads N]
+ *                    [--seed N] [--mode uniform|bag] [--checkpoint FILE]
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import simpleIO.Console;
+
+public class WeightTuner {
+    private static final int ELITES = 2; //best individuals copied to the next generation as they are
+    private static final int TOURNAMENT = 3; //individuals that compete to be a parent
+    private static final double MUTATION_RATE = 0.1; //chance a child gets a weight nudged
+    private static final double MUTATION_SIZE = 0.2; //biggest nudge (before scaling to length 1)
+
+    //settings
+    private int populationSize = 50;
+    private int games = 20; //games per individual per generation
+    private int maxPieces = 500; //a game stops here even if it didn't top out
+    private long seed = 1;
+    private PieceGenerator.Mode mode = PieceGenerator.Mode.BAG;
+    private Path checkpoint = Paths.get("data", "tuner.checkpoint");
+
+    //state
+    private int generation = 0;
+    private double[][] population;
+    private double[] fitness;
+    private double[] best = null; //best weights ever seen
+    private double bestFitness = Double.NEGATIVE_INFINITY;
+
+    /**
+     * fork-join task that plays a range of (individual, game) pairs
+     */
+    private class GamesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from, to; //indexes of individual * games + game
+        private final double[][] lines; //lines cleared [individual][game]
+
+        GamesTask(int from, int to, double[][] lines) {
+            this.from = from;
+            this.to = to;
+            this.lines = lines;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 4) {
+                PlacementGame game = new PlacementGame();
+                for (int i = from; i < to; i++) {
+                    int individual = i / games;
+                    int g = i % games;
+                    long gameSeed = TournamentRunner.gameSeed(seed, (long) generation * games + g);
+                    lines[individual][g] = game.play(new Heuristic(population[individual]), gameSeed);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new GamesTask(from, mid, lines), new GamesTask(mid, to, lines));
+        }
+    }
+
+    /**
+     * scratch space for playing placement games (one per task, reused between its games)
+     */
+    private class PlacementGame {
+        private final Board board = new Board();
+        private final BoardBatch batch = new BoardBatch(64);
+        private final MoveGenerator generator = new MoveGenerator();
+        private final Tetromino piece = new Tetromino(0);
+
+        int play(Heuristic heuristic, long gameSeed) {
+            board.clear();
+            PieceGenerator pieces = PieceGenerator.create(mode, gameSeed);
+            int lines = 0;
+            for (int n = 0; n < maxPieces; n++) {
+                int type = pieces.next();
+                int count = generator.generate(board, type, 0, Tetromino.spawnX(type), Tetromino.spawnY(type));
+                if (count == 0) { //can't spawn -> topped out
+                	break;
+                }
+                batch.clear(board);
+                for (int i = 0; i < count; i++) {
+                    int pose = generator.getPlacement(i);
+                    piece.type = type;
+                    piece.setPose(MoveGenerator.poseRotation(pose), MoveGenerator.poseX(pose), MoveGenerator.poseY(pose));
+                    batch.add(piece);
+                }
+                batch.evaluate(heuristic);
+                int best = 0;
+                for (int i = 1; i < count; i++) {
+                    if (batch.getScore(i) > batch.getScore(best)) {
+                        best = i;
+                    }
+                }
+
+                //lock the best one for real
+                int pose = generator.getPlacement(best);
+                piece.type = type;
+                piece.setPose(MoveGenerator.poseRotation(pose), MoveGenerator.poseX(pose), MoveGenerator.poseY(pose));
+                piece.merge(board);
+                board.clearLines(piece.getTopRow(), piece.getBottomRow());
+                lines += batch.getLines(best);
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * method for starting a new random population (or loading the checkpoint if there is one)
+     */
+    public void start() throws IOException {
+        if (Files.exists(checkpoint)) {
+            load();
+            Console.print("Carrying on from generation " + generation + " in " + checkpoint);
+            return;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        population = new double[populationSize][];
+        for (int i = 0; i < populationSize; i++) {
+            double[] weights = new double[Heuristic.FEATURES];
+            for (int f = 0; f < weights.length; f++) {
+                weights[f] = random.nextDouble() * 2 - 1;
+            }
+            population[i] = normalize(weights);
+        }
+        population[0] = normalize(Heuristic.DEFAULT_WEIGHTS.clone()); //the current weights take part too
+        generation = 0;
+    }
+
+    /**
+     * method for playing one generation and making the next one
+     *
+     * @param pool to play the games on
+     */
+    public void step(ForkJoinPool pool) throws IOException {
+        double[][] lines = new double[populationSize][games];
+        pool.invoke(new GamesTask(0, populationSize * games, lines));
+        fitness = new double[populationSize];
+        for (int i = 0; i < populationSize; i++) {
+            fitness[i] = Arrays.stream(lines[i]).average().orElse(0);
+        }
+
+        //best first
+        Integer[] order = new Integer[populationSize];
+        for (int i = 0; i < populationSize; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(fitness[b], fitness[a]));
+        if (fitness[order[0]] > bestFitness) {
+            bestFitness = fitness[order[0]];
+            best = population[order[0]].clone();
+        }
+
+        //next generation (random numbers only depend on the seed and generation)
+        SplittableRandom random = new SplittableRandom(TournamentRunner.gameSeed(~seed, generation));
+        double[][] next = new double[populationSize][];
+        for (int i = 0; i < ELITES && i < populationSize; i++) {
+            next[i] = population[order[i]].clone();
+        }
+        for (int i = ELITES; i < populationSize; i++) {
+            int a = pick(random), b = pick(random);
+            double fa = Math.max(fitness[a], 1e-9), fb = Math.max(fitness[b], 1e-9);
+            double[] child = new double[Heuristic.FEATURES];
+            for (int f = 0; f < child.length; f++) {
+                child[f] = (population[a][f] * fa + population[b][f] * fb) / (fa + fb);
+            }
+            if (random.nextDouble() < MUTATION_RATE) {
+                child[random.nextInt(child.length)] += (random.nextDouble() * 2 - 1) * MUTATION_SIZE;
+            }
+            next[i] = normalize(child);
+        }
+        population = next;
+        generation++;
+        save();
+    }
+
+    private int pick(SplittableRandom random) { //tournament selection
+        int winner = random.nextInt(populationSize);
+        for (int k = 1; k < TOURNAMENT; k++) {
+            int other = random.nextInt(populationSize);
+            if (fitness[other] > fitness[winner]) {
+                winner = other;
+            }
+        }
+        return winner;
+    }
+
+    private static double[] normalize(double[] weights) { //scale to length 1
+        double length = 0;
+        for (double w : weights) {
+            length += w * w;
+        }
+        length = Math.sqrt(length);
+        if (length > 0) {
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] /= length;
+            }
+        }
+        return weights;
+    }
+
+    //checkpoint file: one "key values..." line per setting, then one "individual" line per weight vector
+    private void save() throws IOException {
+        Path folder = checkpoint.toAbsolutePath().getParent();
+        if (folder != null) {
+            Files.createDirectories(folder);
+        }
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write("# WeightTuner checkpoint\n");
+            out.write("generation " + generation + "\n");
+            out.write("seed " + seed + "\n");
+            out.write("games " + games + "\n");
+            out.write("pieces " + maxPieces + "\n");
+            out.write("mode " + mode + "\n");
+            if (best != null) {
+                out.write("best " + bestFitness + " " + join(best) + "\n");
+            }
+            for (double[] weights : population) {
+                out.write("individual " + join(weights) + "\n");
+            }
+        }
+        ReplayHandler.commit(temp, checkpoint);
+    }
+
+    private void load() throws IOException {
+        List<double[]> individuals = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                switch (parts[0]) {
+                    case "generation": generation = Integer.parseInt(parts[1]); break;
+                    case "seed": seed = Long.parseLong(parts[1]); break;
+                    case "games": games = Integer.parseInt(parts[1]); break;
+                    case "pieces": maxPieces = Integer.parseInt(parts[1]); break;
+                    case "mode": mode = PieceGenerator.Mode.valueOf(parts[1]); break;
+                    case "best":
+                        bestFitness = Double.parseDouble(parts[1]);
+                        best = parse(parts, 2);
+                        break;
+                    case "individual": individuals.add(parse(parts, 1)); break;
+                    default: break; //comments
+                }
+            }
+        }
+        if (individuals.isEmpty()) {
+            throw new IOException("Checkpoint " + checkpoint + " has no individuals");
+        }
+        population = individuals.toArray(new double[0][]);
+        populationSize = population.length;
+    }
+
+    private static String join(double[] weights) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < weights.length; i++) {
+            text.append(i > 0 ? " " : "").append(weights[i]);
+        }
+        return text.toString();
+    }
+
+    private static double[] parse(String[] parts, int from) throws IOException {
+        if (parts.length - from != Heuristic.FEATURES) {
+            throw new IOException("Expected " + Heuristic.FEATURES + " weights but got " + (parts.length - from));
+        }
+        double[] weights = new double[Heuristic.FEATURES];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = Double.parseDouble(parts[from + i]);
+        }
+        return weights;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public double[] getBest() {
+        return best == null ? null : best.clone();
+    }
+
+    public double getBestFitness() {
+        return bestFitness;
+    }
+
+    public static void main(String[] args) throws IOException {
+        WeightTuner tuner = new WeightTuner();
+        int generations = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        //read the options
+        Map<String, String> options = Options.parse(args, 0, "--population", "--games", "--pieces", "--generations",
+                "--threads", "--seed", "--mode", "--checkpoint");
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String value = option.getValue();
+            switch (option.getKey()) { //unknown options were already rejected
+                case "--population": tuner.populationSize = Integer.parseInt(value); break;
+                case "--games": tuner.games = Integer.parseInt(value); break;
+                case "--pieces": tuner.maxPieces = Integer.parseInt(value); break;
+                case "--generations": generations = Integer.parseInt(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--seed": tuner.seed = Long.parseLong(value); break;
+                case "--mode": tuner.mode = PieceGenerator.Mode.valueOf(value.toUpperCase()); break;
+                case "--checkpoint": tuner.checkpoint = Paths.get(value); break;
+            }
+        }
+
+        tuner.start();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        while (tuner.generation < generations) {
+            long start = System.nanoTime();
+            tuner.step(pool);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double mean = Arrays.stream(tuner.fitness).average().orElse(0);
+            Console.print(String.format(Locale.ROOT, "Generation %d: best %.1f lines, mean %.1f, %.1f games/s -> best so far %.1f %s",
+                    tuner.generation, Arrays.stream(tuner.fitness).max().orElse(0), mean,
+                    tuner.populationSize * tuner.games / seconds, tuner.bestFitness, Arrays.toString(tuner.best)));
+        }
+        pool.shutdown();
+        if (tuner.best == null) { //the checkpoint was already at the last generation
+        	return;
+        }
+
+        Console.print("Best weights (" + String.format(Locale.ROOT, "%.1f", tuner.bestFitness) + " lines a game):");
+        Console.print("{" + join(tuner.best).replace(" ", ", ") + "}");
+    }
+}
@@ -0,0 +1,67 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * Zobrist.java
+ * @author V. Aiden
+ * 
+ * Zobrist hashing gives every (cell) and every (piece in a slot) its own random 64 bit number,
+ * the hash of a position is all of those numbers XORed together,
+ * so filling or emptying a cell just XORs one number in or out
+ * 
+ * the numbers come from a fixed seed so hashes are the same every run
+ */
+
+public class Zobrist {
+    public static final int PIECE_SLOTS = 8; //current piece + up to 7 upcoming ones
+
+    static final long[] CELLS = new long[Board.ROWS * Board.COLUMNS];
+    static final long[][] PIECES = new long[PIECE_SLOTS][7];
+    static final long[] DEPTH = new long[PIECE_SLOTS + 1];
+
+    static {
+        FastRandom random = new FastRandom(0x7E7215L);
+        for (int i = 0; i < CELLS.length; i++) {
+            CELLS[i] = nextLong(random);
+        }
+        for (int slot = 0; slot < PIECE_SLOTS; slot++) {
+            for (int type = 0; type < 7; type++) {
+                PIECES[slot][type] = nextLong(random);
+            }
+        }
+        for (int d = 0; d < DEPTH.length; d++) {
+            DEPTH[d] = nextLong(random);
+        }
+    }
+
+    private static long nextLong(FastRandom random) {
+        return ((long) random.nextInt() << 32) | (random.nextInt() & 0xFFFFFFFFL);
+    }
+
+    /**
+     * method for the hash of one cell
+     *
+     * @param x (column)
+     * @param y (row)
+     * @return zobrist number
+     */
+    public static long cell(int x, int y) {
+        return CELLS[y * Board.COLUMNS + x];
+    }
+
+    /**
+     * method for hashing a search position: the board, the pieces still to place and how deep to search
+     *
+     * @param board
+     * @param upcoming piece types
+     * @param index of the piece to place now
+     * @param amount of pieces left to place
+     * @return zobrist hash
+     */
+    public static long position(Board board, int[] pieces, int index, int remaining) {
+        long hash = board.getHash() ^ DEPTH[Math.min(remaining, PIECE_SLOTS)];
+        for (int i = 0; i < remaining && index + i < pieces.length && i < PIECE_SLOTS; i++) {
+            hash ^= PIECES[i][pieces[index + i]];
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,162 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * BoardBatchTest.java
+ * @author V. Aiden
+ *
+ * BoardBatchTest checks the fast board code against the slow obvious way of doing the same thing:
+ * both BoardBatch kernels against locking every placement on a real Board and scoring it with
+ * Heuristic.evaluate, and Board.clearLines against clearing full rows one at a time
+ *
+ * the boards are random (same seed every run) with a lot of full and almost full rows so lines get cleared
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class BoardBatchTest {
+    private static final int BOARDS = 2000;
+
+    //random stack, some rows full so a piece (or clearLines) clears them
+    private static Board randomBoard(SplittableRandom random) {
+        Board board = new Board();
+        int stack = random.nextInt(Board.ROWS - 3); //leave room for a piece to spawn
+        for (int y = Board.ROWS - stack; y < Board.ROWS; y++) {
+            boolean full = random.nextInt(4) == 0;
+            int hole = random.nextInt(Board.COLUMNS);
+            for (int x = 0; x < Board.COLUMNS; x++) {
+                if (full || (x != hole && random.nextInt(10) < 8)) {
+                    board.setCell(x, y, 1 + random.nextInt(7)); //any tetromino color
+                }
+            }
+        }
+        return board;
+    }
+
+    //the obvious way: copy the rows that aren't full down to the floor one by one
+    private static Board naiveClear(Board board) {
+        Board cleared = new Board();
+        int to = Board.ROWS - 1;
+        for (int y = Board.ROWS - 1; y >= 0; y--) {
+            if (board.getRow(y) == Board.FULL_ROW) {
+            	continue;
+            }
+            for (int x = 0; x < Board.COLUMNS; x++) {
+                if (board.isOccupied(x, y)) {
+                    cleared.setCell(x, to, board.getCell(x, y));
+                }
+            }
+            to--;
+        }
+        return cleared;
+    }
+
+    private static void assertSameBoard(Board expected, Board actual) {
+        for (int y = 0; y < Board.ROWS; y++) {
+            assertEquals("row " + y, expected.getRow(y), actual.getRow(y));
+            assertEquals("colors of row " + y, expected.getColorRow(y), actual.getColorRow(y));
+        }
+        for (int x = 0; x < Board.COLUMNS; x++) {
+            assertEquals("height of column " + x, expected.getColumnHeight(x), actual.getColumnHeight(x));
+        }
+        assertEquals("hash", expected.getHash(), actual.getHash());
+    }
+
+    private static int fullRows(Board board) {
+        int full = 0;
+        for (int y = 0; y < Board.ROWS; y++) {
+            if (board.getRow(y) == Board.FULL_ROW) {
+                full++;
+            }
+        }
+        return full;
+    }
+
+    @Test
+    public void clearLinesMatchesRowByRowClear() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < BOARDS; i++) {
+            Board board = randomBoard(random);
+            Board expected = naiveClear(board);
+            int full = fullRows(board);
+
+            Board cleared = new Board(board);
+            assertEquals(full, cleared.clearLines());
+            assertSameBoard(expected, cleared);
+        }
+    }
+
+    @Test
+    public void clearLinesAfterLockingMatchesRowByRowClear() {
+        SplittableRandom random = new SplittableRandom(2);
+        MoveGenerator generator = new MoveGenerator();
+        for (int i = 0; i < BOARDS; i++) {
+            Board board = randomBoard(random);
+            board.clearLines(); //pieces only ever lock on boards without full rows
+            int type = random.nextInt(7);
+            int count = generator.generate(board, type, 0, Tetromino.spawnX(type), Tetromino.spawnY(type));
+            for (int p = 0; p < count; p++) {
+                Tetromino piece = place(type, generator.getPlacement(p));
+                Board locked = new Board(board);
+                piece.merge(locked);
+                Board expected = naiveClear(locked);
+                int full = fullRows(locked);
+
+                assertEquals(full, locked.clearLines(piece.getTopRow(), piece.getBottomRow()));
+                assertSameBoard(expected, locked);
+            }
+        }
+    }
+
+    @Test
+    public void kernelsMatchHeuristic() {
+        SplittableRandom random = new SplittableRandom(3);
+        Heuristic heuristic = new Heuristic(new double[] {-0.3, -0.5, -0.2, 0.7, -0.1}); //wells counted too
+        BoardBatch batched = new BoardBatch(4, true); //small so they have to grow
+        BoardBatch scalar = new BoardBatch(4, false);
+        MoveGenerator generator = new MoveGenerator();
+        for (int i = 0; i < BOARDS; i++) {
+            Board board = randomBoard(random);
+            board.clearLines();
+            int type = random.nextInt(7);
+            int count = generator.generate(board, type, 0, Tetromino.spawnX(type), Tetromino.spawnY(type));
+
+            batched.clear(board);
+            scalar.clear(board);
+            for (int p = 0; p < count; p++) {
+                Tetromino piece = place(type, generator.getPlacement(p));
+                assertEquals(p, batched.add(piece));
+                assertEquals(p, scalar.add(piece));
+            }
+            batched.evaluate(heuristic);
+            scalar.evaluate(heuristic);
+
+            for (int p = 0; p < count; p++) {
+                Tetromino piece = place(type, generator.getPlacement(p));
+                Board locked = new Board(board);
+                piece.merge(locked);
+                int lines = locked.clearLines(piece.getTopRow(), piece.getBottomRow());
+                double expected = heuristic.evaluate(locked, lines);
+
+                assertEquals(lines, batched.getLines(p));
+                assertEquals(lines, scalar.getLines(p));
+                for (int x = 0; x < Board.COLUMNS; x++) {
+                    assertEquals(locked.getColumnHeight(x), batched.getColumnHeight(p, x));
+                    assertEquals(locked.getColumnHeight(x), scalar.getColumnHeight(p, x));
+                }
+                //same features through the same weighted sum -> exactly the same score
+                assertEquals(expected, batched.getScore(p), 0);
+                assertEquals(expected, scalar.getScore(p), 0);
+            }
+        }
+    }
+
+    private static Tetromino place(int type, int pose) {
+        Tetromino piece = new Tetromino(type);
+        piece.setPose(MoveGenerator.poseRotation(pose), MoveGenerator.poseX(pose), MoveGenerator.poseY(pose));
+        return piece;
+    }
+}
@@ -0,0 +1,82 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * LeaderboardTest.java
+ * @author V. Aiden
+ *
+ * LeaderboardTest checks that the score log gets over a crash in the middle of a write:
+ * a record at the end that was only half written (or has a bad crc) is cut off when the log
+ * is opened again, every record before it is kept and new records can be added after it
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LeaderboardTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ScoreRecord record(int score) {
+        return new ScoreRecord("player" + score, score, score / 100, 60000, 1000 + score, "");
+    }
+
+    //log with three good records, returns its size
+    private static long writeLog(Path file) throws IOException {
+        Leaderboard board = new Leaderboard(file, 10);
+        board.addAll(Arrays.asList(record(300), record(100), record(200)));
+        board.close();
+        return Files.size(file);
+    }
+
+    private static void assertReopens(Path file, long goodSize) throws IOException {
+        Leaderboard board = new Leaderboard(file, 10);
+        assertEquals(3, board.getRecordCount());
+        assertEquals(300, board.getHighScore());
+        assertEquals(goodSize, Files.size(file)); //the broken tail is gone
+
+        //new records go right after the good ones
+        board.add(record(400));
+        board.close();
+        board = new Leaderboard(file, 10);
+        assertEquals(4, board.getRecordCount());
+        assertEquals(400, board.getHighScore());
+        board.close();
+    }
+
+    @Test
+    public void tornRecordIsCutOff() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("scores.log");
+        long goodSize = writeLog(file);
+
+        //the start of a fourth record, the game died before the rest was written
+        byte[] torn = {0, 0, 0, 40, 0, 5, 'e', 'v', 'e'};
+        Files.write(file, torn, StandardOpenOption.APPEND);
+
+        assertReopens(file, goodSize);
+    }
+
+    @Test
+    public void recordWithBadCrcIsCutOff() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("scores.log");
+        long goodSize = writeLog(file);
+
+        //a whole fourth record, then flip a bit in its crc
+        Leaderboard board = new Leaderboard(file, 10);
+        board.add(record(500));
+        board.close();
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+
+        assertReopens(file, goodSize);
+    }
+}
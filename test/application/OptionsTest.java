@@ -0,0 +1,38 @@
+package application;
+/**
+ * ICS4U RST Final Project
+ * OptionsTest.java
+ * @author V. Aiden
+ *
+ * OptionsTest checks the command line reading every tool shares
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class OptionsTest {
+    @Test
+    public void readsValuesAndFlags() {
+        String[] args = {"folder", "--threads", "4", "--suite", "--rejects", "out.txt"};
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("--threads", "4");
+        expected.put("--suite", "true");
+        expected.put("--rejects", "out.txt");
+        assertEquals(expected, Options.parse(args, 1, Arrays.asList("--suite"), "--threads", "--rejects"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingValue() {
+        Options.parse(new String[] {"--games", "10", "--seed"}, 0, "--games", "--seed");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownOption() {
+        Options.parse(new String[] {"--gamez", "10"}, 0, "--games");
+    }
+}